@@ -7,21 +7,32 @@ import com.corundumstudio.socketio.listener.DataListener;
 import com.nodewars.dto.RoomRequestDto;
 import com.nodewars.dto.RoomJoinDto;
 import com.nodewars.dto.ChatMessageDto;
+import com.nodewars.objects.RoomClosedEvent;
+import com.nodewars.objects.RoomCreatedEvent;
 import com.nodewars.objects.RoomDetails;
+import com.nodewars.objects.RoomDispatcher;
+import com.nodewars.objects.RoomFullEvent;
+import com.nodewars.objects.RoomRegistry;
+import com.nodewars.service.RoomStateService;
 import com.nodewars.service.S3Service;
 import com.nodewars.service.UserService;
 
-import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import java.util.HashMap;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import jakarta.annotation.PreDestroy;
+
 @Configuration
 public class SocketIOConfig {
 
@@ -30,13 +41,49 @@ public class SocketIOConfig {
 
     @Autowired
     private UserService userService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RoomStateService roomStateService;
+
+    @Value("${match.timer.sync-ms:60000}")
+    private long timerSyncMs;
+
+    @Value("${socketio.dispatch.threads:16}")
+    private int dispatchThreads;
+
+    @Value("${socketio.dispatch.queue-capacity:1000}")
+    private int dispatchQueueCapacity;
+
+    @Value("${socketio.dispatch.room-backlog:64}")
+    private int dispatchRoomBacklog;
     
     private static final Logger logger = LoggerFactory.getLogger(SocketIOConfig.class);
 
-    private Map<String, RoomDetails> rooms = new HashMap<>();
+    private final RoomRegistry rooms = new RoomRegistry();
 
     private SocketIOServer server;
 
+    // Room events that touch the database or S3 are handled here, in order per room, off the socket threads.
+    private RoomDispatcher dispatcher;
+
+    // Ticks every room's timer; each running timer has one pending task on it.
+    private final ScheduledExecutorService roomTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "room-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The open match rooms, for services that need to know who is seated where.
+     */
+    @Bean
+    public RoomRegistry roomRegistry() {
+        return rooms;
+    }
+
     @Bean
     public SocketIOServer socketIOServer() {
         com.corundumstudio.socketio.Configuration config = new com.corundumstudio.socketio.Configuration();
@@ -44,6 +91,7 @@ public class SocketIOConfig {
         config.setPort(9092);
 
         server = new SocketIOServer(config);
+        dispatcher = new RoomDispatcher(dispatchThreads, dispatchQueueCapacity, dispatchRoomBacklog);
 
         server.addConnectListener(client -> {
             System.out.println("Client connected: " + client.getSessionId());
@@ -51,13 +99,11 @@ public class SocketIOConfig {
 
         server.addDisconnectListener(client -> {
             System.out.println("Client disconnected: " + client.getSessionId());
-            for (String room : client.getAllRooms()) {
-                rooms.get(room).setOccupancy(rooms.get(room).getOccupancy() - 1);
-            }
+            rooms.disconnect(client.getSessionId());
         });
 
         // Example usage in an event listener
-        server.addEventListener("request_draw", String.class, (client, roomId, ackRequest) -> {
+        server.addEventListener("request_draw", String.class, (client, roomId, ackRequest) -> dispatch(roomId, ackRequest, () -> {
             logger.info("Draw requested in room: " + roomId);
             String requesterUsername = getUsernameForClient(roomId, client);
             
@@ -74,9 +120,9 @@ public class SocketIOConfig {
                 logger.error("Client not in room: " + client.getSessionId());
                 ackRequest.sendAckData("error: client not in room");
             }
-        });
+        }));
 
-        server.addEventListener("respond_draw", Map.class, (client, data, ackRequest) -> {
+        server.addEventListener("respond_draw", Map.class, (client, data, ackRequest) -> dispatch((String) data.get("roomId"), ackRequest, () -> {
             logger.info("Draw response received in room: " + data.get("roomId"));
             String roomId = (String) data.get("roomId");
             boolean accepted = (Boolean) data.get("accepted");
@@ -89,7 +135,7 @@ public class SocketIOConfig {
 
                     // Kick all players from the room
                     room.getOccupants().keySet().forEach(clientId -> {
-                        SocketIOClient roomClient = server.getClient(UUID.fromString(clientId));
+                        SocketIOClient roomClient = server.getClient(clientId);
                         if (roomClient != null) {
                             roomClient.leaveRoom(roomId);
                         }
@@ -97,15 +143,16 @@ public class SocketIOConfig {
 
                     // Optionally reset or close the room
                     rooms.remove(roomId);
+                    eventPublisher.publishEvent(new RoomClosedEvent(roomId));
                 } else {
                     // Draw is rejected
                     server.getRoomOperations(roomId).sendEvent("draw_rejected", "Draw request declined");
                 }
             }
-        });
+        }));
 
 
-        server.addEventListener("forfeit", Map.class, (client, data, ackRequest) -> {
+        server.addEventListener("forfeit", Map.class, (client, data, ackRequest) -> dispatch((String) data.get("roomId"), ackRequest, () -> {
             String roomId = (String) data.get("roomId");
             logger.info("Forfeit requested in room: " + roomId);
             String username = (String) data.get("opponent");
@@ -117,7 +164,7 @@ public class SocketIOConfig {
                 
                 // Kick all players from the room
                 room.getOccupants().keySet().forEach(clientId -> {
-                    SocketIOClient roomClient = server.getClient(UUID.fromString(clientId));
+                    SocketIOClient roomClient = server.getClient(clientId);
                     if (roomClient != null) {
                         roomClient.leaveRoom(roomId); // Optionally use `kick()` if available
                     }
@@ -125,103 +172,86 @@ public class SocketIOConfig {
 
                 // Optionally reset or close the room
                 rooms.remove(roomId); // Close the room after the forfeit
+                eventPublisher.publishEvent(new RoomClosedEvent(roomId));
             }
-        });
+        }));
 
 
         server.addEventListener("chat_message", ChatMessageDto.class, (client, data, ackRequest) -> {
             String roomId = getRoomOfClient(client);
 
             if (roomId != null) {
-                server.getRoomOperations(roomId).sendEvent("room_message", data);
-                logger.info("Message from {} in room {}: {}: {}", 
-                    client.getSessionId(), roomId, data.getUsername(), data.getContent());
+                dispatch(roomId, ackRequest, () -> {
+                    server.getRoomOperations(roomId).sendEvent("room_message", data);
+                    logger.info("Message from {} in room {}: {}: {}",
+                        client.getSessionId(), roomId, data.getUsername(), data.getContent());
+                });
             }
         });
 
-        server.addEventListener("join_room", RoomJoinDto.class, (client, data, ackRequest) -> {
+        server.addEventListener("join_room", RoomJoinDto.class, (client, data, ackRequest) -> dispatch(data.getRoomId(), ackRequest, () -> {
             String roomId = data.getRoomId();
             String username = data.getUsername();
 
             logger.info("Client " + client.getSessionId() + " is attempting to join room " + roomId + " with username " + username);
-            logger.info(rooms.toString());
-            if (!rooms.containsKey(roomId)) {
+            RoomRegistry.Join join = rooms.join(roomId, client.getSessionId(), username);
+            if (join == RoomRegistry.Join.NO_ROOM) {
                 logger.info("Room " + roomId + " does not exist");
                 ackRequest.sendAckData("error");
                 return;
             }
+            if (join == RoomRegistry.Join.FULL) {
+                logger.info("Room " + roomId + " is full");
+                ackRequest.sendAckData("error: room full");
+                return;
+            }
+            if (!client.isChannelOpen()) {
+                // Disconnected while the join waited its turn; the disconnect found no seat to give up.
+                rooms.disconnect(client.getSessionId());
+                return;
+            }
 
             RoomDetails roomDetails = rooms.get(roomId);
-
-            if (roomDetails.getOccupants().containsValue(username)) {
-                boolean updated = roomDetails.updateOccupant(client.getSessionId().toString(), username);
-                if (!updated) {
-                    logger.info("Username " + username + " is already in room " + roomId);
-                    ackRequest.sendAckData("error: room full");
-                    return;
-                }
-            } else {
-                int currentOccupancy = roomDetails.getOccupancy();
-                if (currentOccupancy >= 2) {
-                    logger.info("Room " + roomId + " is full");
-                    ackRequest.sendAckData("error: room full");
-                    return;
-                }
-                roomDetails.addOccupant(client.getSessionId().toString(), username);
+            if (roomDetails == null) {
+                // Closed while the player was being seated.
+                ackRequest.sendAckData("error");
+                return;
             }
 
             client.joinRoom(roomId);
-            roomDetails.setOccupancy(roomDetails.getOccupants().size());
-
-            String pfp = s3Service.getPreSignedUrl(userService.getPfpByPreferredUsername(username));
-            String elo = String.valueOf(userService.getEloByPreferredUsername(username));
-
-            List<Map<String, String>> occupantsData = roomDetails.getOccupants().entrySet().stream()
-                .map(entry -> {
-                    String occupantPfp = s3Service.getPreSignedUrl(userService.getPfpByPreferredUsername(entry.getValue()));
-                    String occupantElo = String.valueOf(userService.getEloByPreferredUsername(entry.getValue()));
-                    return Map.of(
-                        "username", entry.getValue(),
-                        "pfp", occupantPfp,
-                        "elo", occupantElo
-                    );
-                })
+            client.set("roomId", roomId);
+            client.set("username", username);
+
+            List<Map<String, String>> occupantsData = roomDetails.getOccupants().values().stream()
+                .map(occupant -> Map.of(
+                    "username", occupant,
+                    "pfp", s3Service.getPreSignedUrl(userService.getPfpByPreferredUsername(occupant)),
+                    "elo", String.valueOf(userService.getEloByPreferredUsername(occupant))
+                ))
                 .collect(Collectors.toList());
 
             server.getRoomOperations(roomId).sendEvent("room_update", occupantsData);
 
-            if (roomDetails.getOccupancy() == 2) {
-                startRoomTimer(roomId);
+            if (roomDetails.getOccupancy() == 2 && startRoomTimer(roomDetails)) {
+                eventPublisher.publishEvent(new RoomFullEvent(roomId, roomDetails.getSlug(), List.copyOf(roomDetails.getOccupants().values())));
+            } else if (roomDetails.isTimerRunning()) {
+                // Rejoining a running match; the room heard timer_started already.
+                client.sendEvent("timer_started", timerState(roomDetails));
             }
 
-            logger.info(rooms.toString());
-
             ackRequest.sendAckData(Map.of(
                 "status", "success",
                 "slug", roomDetails.getSlug()
             ));
-        });
+        }));
 
         server.addEventListener("live_code_line_count", Map.class, (client, data, ackRequest) -> {
-            String roomId = getRoomOfClient(client);
-
-            if (roomId != null) {
-                server.getRoomOperations(roomId).sendEvent("live_code_line_count", Map.of (
-                    "username", data.get("username"),
-                    "lineCount", data.get("lineCount")
-                ));
-            }
-        });
-
-        server.addEventListener("live_test_cases_count", Map.class, (client, data, ackRequest) -> {
-            String roomId = getRoomOfClient(client);
+            RoomDetails room = rooms.roomOf(client.getSessionId());
+            String username = room == null ? null : room.getUsername(client.getSessionId());
 
-            if (roomId != null) {
-                server.getRoomOperations(roomId).sendEvent("live_test_cases_count", Map.of (
-                    "username", data.get("username"),
-                    "accepted", data.get("accepted"),
-                    "total", data.get("total")
-                ));
+            if (username != null && data.get("lineCount") != null) {
+                // Sent on to the opponent with the next room_state_delta.
+                roomStateService.updateLineCount(room.getId(), username, data.get("lineCount"));
             }
         });
 
@@ -231,13 +261,13 @@ public class SocketIOConfig {
             String slug = data.getSlug();
             logger.info("Client " + client.getSessionId() + " is attempting to create room " + roomId + " with slug " + slug);
 
-            if (rooms.containsKey(roomId)) {
+            if (rooms.create(roomId, slug) == null) {
                 ackRequest.sendAckData("error");
                 return;
             }
 
-            rooms.put(roomId, new RoomDetails(0, slug));
             logger.info("Room " + roomId + " has been created with slug " + slug);
+            eventPublisher.publishEvent(new RoomCreatedEvent(roomId, slug));
 
             ackRequest.sendAckData("success");
         });
@@ -246,8 +276,10 @@ public class SocketIOConfig {
             String roomId = getRoomOfClient(client);
 
             if (roomId != null) {
-                server.getRoomOperations(roomId).sendEvent("room_message", message);
-                System.out.println("Message from " + client.getSessionId() + " in room " + roomId + ": " + message);
+                dispatch(roomId, ackRequest, () -> {
+                    server.getRoomOperations(roomId).sendEvent("room_message", message);
+                    System.out.println("Message from " + client.getSessionId() + " in room " + roomId + ": " + message);
+                });
             }
         });
 
@@ -257,65 +289,96 @@ public class SocketIOConfig {
         return server;
     }
 
-        // Method to get the username for a given client based on roomId
-    private String getUsernameForClient(String roomId, SocketIOClient client) {
-        // Fetch the room details from the rooms map
-        RoomDetails room = rooms.get(roomId);
-        
-        if (room != null) {
-            // Iterate through the room's occupants to find the username for the given client sessionId
-            for (Map.Entry<String, String> entry : room.getOccupants().entrySet()) {
-                logger.info("Client sessionId: " + client.getSessionId() + ", entry key: " + entry.getKey());
-                logger.info("comparison result: " + entry.getKey().equals(client.getSessionId().toString()));
-                if (entry.getKey().equals(client.getSessionId().toString())) {
-                    // Return the username associated with the client's sessionId
-                    return entry.getValue();
-                }
-            }
+    /**
+     * Hands a room's event to the dispatcher, answering the client if the room
+     * has too many events waiting already, or the dispatcher has no room for
+     * another room's events.
+     */
+    private void dispatch(String roomId, AckRequest ackRequest, Runnable handler) {
+        if (roomId == null) {
+            ackRequest.sendAckData("error");
+            return;
         }
-        
-        // If the client is not found in the room's occupants, return null or handle the error accordingly
-        return null;
+        if (!dispatcher.dispatch(roomId, handler)) {
+            logger.warn("Room " + roomId + " or the dispatcher is at capacity; dropping an event");
+            ackRequest.sendAckData("error: busy");
+        }
+    }
+
+    /**
+     * @return the client's username if it is seated in the given room, otherwise null
+     */
+    private String getUsernameForClient(String roomId, SocketIOClient client) {
+        RoomDetails room = rooms.roomOf(client.getSessionId());
+        return room != null && room.getId().equals(roomId) ? room.getUsername(client.getSessionId()) : null;
     }
 
     private String getRoomOfClient(SocketIOClient client) {
-        for (String room : client.getAllRooms()) {
-            return room;
-        }
-        return null;
+        RoomDetails room = rooms.roomOf(client.getSessionId());
+        return room == null ? null : room.getId();
     }
 
-    private void startRoomTimer(String roomId) {
-        RoomDetails room = rooms.get(roomId);
-        if (room == null || room.isTimerRunning()) {
-            return;
+    /**
+     * Starts a room's timer and tells the room when it runs out. Clients count
+     * down on their own from there; the timer thread only wakes to send a
+     * timer_sync every match.timer.sync-ms and timer_ended at the deadline.
+     *
+     * @return false if it was already running
+     */
+    private boolean startRoomTimer(RoomDetails room) {
+        long run = room.startTimer();
+        if (run < 0) {
+            return false;
         }
+        server.getRoomOperations(room.getId()).sendEvent("timer_started", timerState(room));
+        scheduleTimerTick(room, run);
+        return true;
+    }
 
-        room.setTimerRunning(true);
-
-        new Thread(() -> {
-            while (room.getRemainingTime() > 0 && room.isTimerRunning()) {
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-
-                room.setRemainingTime(room.getRemainingTime() - 1);
-                server.getRoomOperations(roomId).sendEvent("timer_update", room.getRemainingTime());
+    private void scheduleTimerTick(RoomDetails room, long run) {
+        long delay = Math.min(room.getRemainingMillis(), timerSyncMs);
+        room.setTimerTask(run, roomTimer.schedule(() -> tickRoomTimer(room, run), delay, TimeUnit.MILLISECONDS));
+    }
 
-                if (room.getOccupancy() == 0) {
-                    room.setTimerRunning(false);
-                    break;
-                }
+    private void tickRoomTimer(RoomDetails room, long run) {
+        try {
+            if (room.endTimer(run)) {
+                server.getRoomOperations(room.getId()).sendEvent("timer_ended", "Time's up!");
+                eventPublisher.publishEvent(new RoomClosedEvent(room.getId()));
+                return;
             }
-
-            if (room.getRemainingTime() <= 0) {
-                room.setTimerRunning(false);
-                server.getRoomOperations(roomId).sendEvent("timer_ended", "Time's up!");
+            if (!room.isTimerRun(run)) {
+                return;
+            }
+            // Woken just short of the deadline needs no correction, only another tick.
+            if (room.getRemainingMillis() >= 1000) {
+                server.getRoomOperations(room.getId()).sendEvent("timer_sync", timerState(room));
             }
-        }).start();
+            scheduleTimerTick(room, run);
+        } catch (RuntimeException e) {
+            // A failed tick must not leave the room without a timer_ended.
+            logger.error("Timer tick failed in room " + room.getId(), e);
+            scheduleTimerTick(room, run);
+        }
+    }
+
+    /**
+     * The deadline and the server's clock, so clients can count down against
+     * the deadline however far their own clocks are off.
+     */
+    private Map<String, Long> timerState(RoomDetails room) {
+        return Map.of(
+            "deadline", room.getDeadline(),
+            "serverTime", System.currentTimeMillis()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        roomTimer.shutdownNow();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
     }
 
 }
\ No newline at end of file
@@ -3,22 +3,27 @@ package com.nodewars.controller;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nodewars.service.CompilerService;
-import com.nodewars.service.ProblemService;
+import com.nodewars.objects.JudgeJob;
+import com.nodewars.objects.JudgeScheduler;
+import com.nodewars.service.JudgeQueueService;
+import com.nodewars.utils.CognitoUtils;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST controller for handling code compilation and execution requests.
  *
  * This controller provides an endpoint for clients to submit code,
  * specify the programming language, and include test cases. 
- * It delegates the compilation and execution to the CompilerService, 
- * which interacts with AWS Lambda to run the appropriate function.
+ * Requests are queued with the JudgeQueueService, which executes them
+ * through the CompilerService and delivers the result asynchronously.
  *
  * Supports the following languages:
  * - C
@@ -37,111 +42,110 @@ public class CompilerController {
     private static final Logger logger = LoggerFactory.getLogger(CompilerController.class);
 
     @Autowired
-    private CompilerService compilerService;
+    private JudgeQueueService judgeQueueService;
 
     @Autowired
-    private ProblemService problemService;
+    private CognitoUtils cognitoUtils;
 
     /**
-     * Endpoint to compile and execute user-submitted code with test cases.
-     * Delegates code execution to AWS Lambda via CompilerService.
-     * @param request Map containing "language", "code", "slug", and "testCases".
-     * @return ResponseEntity with execution results or error details.
+     * Endpoint to compile and execute user-submitted code against the shown test cases.
+     * The run is queued and its result is available from /compile/jobs/{jobId},
+     * and pushed to the client's socket if "socketId" is seated in a match as the signed-in user.
+     * @param request Map containing "language", "code", "slug" and optionally "socketId".
+     * @param idToken the ID token (optional, via cookie); required to run in a match
+     * @return ResponseEntity with the queued job, 401 if the ID token is invalid, or 429 if the queue is full or the
+     *         client is sending too many requests.
      */
     @PostMapping("/run")
-    public ResponseEntity<Map<String, Object>> runCode(@RequestBody Map<String, Object> request) {
-        String language = (String) request.get("language");
-        String code = (String) request.get("code");
-        String slug = (String) request.get("slug");
-    
-        try {
-            String harnessCode = problemService.getHarnessCode(slug, language);
-            logger.info("Harness code: " + harnessCode);
-
-            String shownTestCasesJson = problemService.getFirstThreeTestCases(slug);
-            logger.info("Fetched first three test cases: " + shownTestCasesJson);
-
-            ObjectMapper objectMapper = new ObjectMapper();
-            Object testCases = objectMapper.readValue(shownTestCasesJson, Object.class);
+    public ResponseEntity<Map<String, Object>> runCode(@RequestBody Map<String, Object> request,
+        @CookieValue(name = "idToken", required = false) String idToken, HttpServletRequest httpRequest) {
+        return enqueue(JudgeJob.Type.RUN, request, idToken, httpRequest);
+    }
 
-            String result = compilerService.compileAndRun(language, code, harnessCode, testCases);
-            logger.info("Result: " + result);
+    /**
+     * Endpoint to submit user-submitted code against all test cases.
+     * The submission is queued and its result is available from /compile/jobs/{jobId},
+     * and pushed to the client's socket if "socketId" is seated in a match as the signed-in user.
+     * @param request Map containing "language", "code", "slug" and optionally "socketId".
+     * @param idToken the ID token (optional, via cookie); required to submit in a match
+     * @return ResponseEntity with the queued job, 401 if the ID token is invalid, or 429 if the queue is full or the
+     *         client is sending too many requests.
+     */
+    @PostMapping("/submit")
+    public ResponseEntity<Map<String, Object>> submitCode(@RequestBody Map<String, Object> request,
+        @CookieValue(name = "idToken", required = false) String idToken, HttpServletRequest httpRequest) {
+        return enqueue(JudgeJob.Type.SUBMIT, request, idToken, httpRequest);
+    }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> resultMap = objectMapper.readValue(result, Map.class);
-            return ResponseEntity.ok(resultMap);
-    
-        } catch (Exception e) {
-            logger.error("Error during code execution", e);
-            return ResponseEntity.status(500).body(Map.of(
+    /**
+     * Endpoint to poll a queued run or submission.
+     * @param jobId the job ID returned by /run or /submit
+     * @return ResponseEntity with the job status and, once finished, its result.
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId) {
+        JudgeJob job = judgeQueueService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(404).body(Map.of(
                 "success", false,
-                "error", e.getMessage()
+                "error", "Job not found"
             ));
         }
+        return ResponseEntity.ok(judgeQueueService.toResponse(job));
     }
 
     /**
-     * Endpoint to submit user-submitted code with test cases.
-     * Delegates code execution to AWS Lambda via CompilerService.
-     * @param request Map containing "language", "code", "slug".
-     * @return ResponseEntity with execution results or error details.
+     * Endpoint to inspect the judge queue.
+     * @return ResponseEntity with in-flight executions, per scheduler lane queue depth and wait times, and per executor
+     *         backend latency histograms and breaker state.
      */
-    @PostMapping("/submit")
-    public ResponseEntity<Map<String, Object>> submitCode(@RequestBody Map<String, Object> request) {
-        String language = (String) request.get("language");
-        String code = (String) request.get("code");
-        String slug = (String) request.get("slug");
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, Object> resultMap;
-    
-        try {
-            String harnessCode = problemService.getHarnessCode(slug, language);
-            logger.info("Harness code: " + harnessCode);
-    
-            String shownTestCasesJson = problemService.getTestCases(slug);
-            logger.info("Fetched test cases: " + shownTestCasesJson);
-    
-            Object testCases = objectMapper.readValue(shownTestCasesJson, Object.class);
-    
-            String result = compilerService.compileAndRun(language, code, harnessCode, testCases);
-    
-            resultMap = objectMapper.readValue(result, Map.class);
-            resultMap.remove("results");
-
-            Object runtimeObj = resultMap.get("runtime_ms");
-            if (runtimeObj instanceof Number) {
-                resultMap.put("runtime_ms", ((Number) runtimeObj).doubleValue() * 100);
-            }
-    
-            logger.info(resultMap.toString());
-    
-            boolean allPassed = (Boolean) resultMap.getOrDefault("all_passed", false);
-    
-            if (allPassed) {
-                int newAcceptedSubmissions = problemService.getAcceptedSubmissions(slug) + 1;
-                problemService.updateAcceptedSubmissions(slug, newAcceptedSubmissions);
-            }
-    
-            return ResponseEntity.ok(resultMap);
-    
-        } catch (Exception e) {
-            logger.error("Error during code execution", e);
-            resultMap = Map.of(
-                "success", false,
-                "error", e.getMessage()
-            );
-            return ResponseEntity.status(500).body(resultMap);
-    
-        } finally {
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(judgeQueueService.getMetrics());
+    }
+
+    private ResponseEntity<Map<String, Object>> enqueue(JudgeJob.Type type, Map<String, Object> request, String idToken, HttpServletRequest httpRequest) {
+        String username = null;
+        if (idToken != null) {
             try {
-                int newTotalSubmissions = problemService.getTotalSubmissions(slug) + 1;
-                problemService.updateTotalSubmissions(slug, newTotalSubmissions);
-                double newAcceptanceRate = problemService.getAcceptedSubmissions(slug) / (double) problemService.getTotalSubmissions(slug);
-                problemService.updateAcceptanceRate(slug, newAcceptanceRate * 100);
-            } catch (Exception updateException) {
-                logger.error("Error updating total submissions or acceptance rate", updateException);
+                username = cognitoUtils.verifyAndGetUser(idToken).getPreferredUsername();
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
+                    "success", false,
+                    "error", "Invalid or expired session"
+                ));
             }
         }
+
+        JudgeJob job = new JudgeJob(
+            type,
+            (String) request.get("language"),
+            (String) request.get("code"),
+            (String) request.get("slug"),
+            (String) request.get("socketId"),
+            username,
+            httpRequest.getRemoteAddr()
+        );
+
+        try {
+            judgeQueueService.enqueue(job);
+            return ResponseEntity.accepted().body(judgeQueueService.toResponse(job));
+        } catch (JudgeScheduler.Throttled e) {
+            logger.warn("Throttling " + type + " from " + job.getOwner());
+            return tooManyRequests(e.getMessage(), e.getRetryAfterMs());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Judge queue full, rejecting " + type + " for " + request.get("slug"));
+            return tooManyRequests("Judge queue is full", judgeQueueService.getRetryAfterMs());
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> tooManyRequests(String error, long retryAfterMs) {
+        return ResponseEntity.status(429)
+            .header("Retry-After", String.valueOf((retryAfterMs + 999) / 1000))
+            .body(Map.of(
+                "success", false,
+                "error", error,
+                "retry_after_ms", retryAfterMs
+            ));
     }
-    
 }
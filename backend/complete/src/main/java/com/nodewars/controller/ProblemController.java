@@ -12,7 +12,9 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.nodewars.service.ProblemService;
+import com.nodewars.service.RejudgeService;
 import com.nodewars.model.Problem;
+import com.nodewars.model.RejudgeCheckpoint;
 
 /**
  * REST controller for managing problems.
@@ -30,6 +32,9 @@ public class ProblemController {
     @Autowired
     private ProblemService problemService;
 
+    @Autowired
+    private RejudgeService rejudgeService;
+
     /**
      * Endpoint to get all problems.
      * 
@@ -107,4 +112,23 @@ public class ProblemController {
         }
     }
 
+    /**
+     * Endpoint to check on the re-judge started by a problem's last test-case update.
+     * 
+     * @param slug the slug of the problem
+     * @return the re-judge checkpoint, or 404 if the problem was never re-judged
+     */
+    @GetMapping("/{slug}/rejudge")
+    public ResponseEntity<RejudgeCheckpoint> getRejudgeStatus(@PathVariable String slug) {
+        try {
+            RejudgeCheckpoint checkpoint = rejudgeService.getCheckpoint(slug);
+            if (checkpoint == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(checkpoint);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).build();
+        }
+    }
+
 }
@@ -0,0 +1,89 @@
+package com.nodewars.executor;
+
+import com.nodewars.objects.ExecutionRequest;
+import com.nodewars.objects.TestCaseSet;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A backend capable of compiling and running a submission against its test cases.
+ *
+ * Every implementation returns the same JSON result document the judge Lambda
+ * produces (success, all_passed, test_cases_passed, total_test_cases, runtime_ms,
+ * results, ...), so callers never need to know which backend ran the code.
+ * Backends that can measure the user's program add cpu_time_ms, wall_time_ms
+ * and peak_memory_kb.
+ */
+public interface CodeExecutor {
+
+    /**
+     * The name this backend is selected by in the compiler.executor.* properties.
+     */
+    String getName();
+
+    /**
+     * Compiles and runs the request without blocking the caller.
+     * Cancelling the returned future abandons the execution where the backend allows it.
+     *
+     * @param request the code, harness and test cases to run
+     * @param timeout the deadline for the execution, or null for the backend's default
+     * @return a future of the raw JSON result document
+     */
+    CompletableFuture<String> executeAsync(ExecutionRequest request, Duration timeout);
+
+    /**
+     * Compiles and runs the request, blocking until the result is available.
+     *
+     * @param request the code, harness and test cases to run
+     * @return the raw JSON result document
+     * @throws Exception if the backend fails to produce a result
+     */
+    default String execute(ExecutionRequest request) throws Exception {
+        try {
+            return executeAsync(request, null).get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Whether the backend can judge requests that carry an OutputChecker, by
+     * comparing the program's output itself. Backends that only return the
+     * harness's verdict cannot.
+     */
+    default boolean supportsCheckers() {
+        return false;
+    }
+
+    /**
+     * Hint that submissions in the given language are about to arrive.
+     * Backends without warm capacity can ignore it.
+     *
+     * @param language the language to warm up
+     */
+    default void prewarm(String language) {
+    }
+
+    /**
+     * Hint how many submissions in the given language should be able to start
+     * without a cold start. Backends with warm capacity start idle capacity up
+     * to it, and may release idle capacity above it. Backends without warm
+     * capacity can ignore it.
+     *
+     * @param language the language to size
+     * @param executions the number of executions to keep warm
+     */
+    default void setWarmCapacity(String language, int executions) {
+    }
+
+    /**
+     * Pushes a test-case set to the backend ahead of the submissions that use it,
+     * so they can reference it by hash. Backends without a cache can ignore it.
+     *
+     * @param testCases the test-case set to seed
+     */
+    default void seedTestCases(TestCaseSet testCases) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.nodewars.executor;
+
+/**
+ * Receives per-test-case verdicts while an execution is still running.
+ *
+ * Harnesses may report each verdict as soon as it is decided by printing
+ * "@@case &lt;token&gt; &lt;index&gt; &lt;1|0&gt;" on stderr, with the random
+ * token the worker hands each job; workers forward these lines as PROGRESS
+ * frames and leave markers with any other token in stderr. Backends that
+ * cannot stream (or harnesses that do not report) simply produce no events
+ * before the final result.
+ */
+@FunctionalInterface
+public interface ExecutionListener {
+
+    ExecutionListener NONE = (index, passed) -> { };
+
+    /**
+     * Called when a test case has been judged.
+     *
+     * @param index the index of the test case within the request's test-case set
+     * @param passed whether the test case passed
+     */
+    void onTestCase(int index, boolean passed);
+}
@@ -0,0 +1,217 @@
+package com.nodewars.executor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.lambda.LambdaAsyncClient;
+import software.amazon.awssdk.services.lambda.LambdaAsyncClientBuilder;
+import software.amazon.awssdk.services.lambda.model.InvokeRequest;
+import software.amazon.awssdk.services.lambda.model.InvokeResponse;
+import software.amazon.awssdk.core.SdkBytes;
+
+import com.nodewars.objects.ExecutionRequest;
+import com.nodewars.utils.JudgeJson;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes submissions by invoking the judge function on AWS Lambda.
+ *
+ * Invocations go through a LambdaAsyncClient on one shared Netty HTTP client,
+ * so an in-flight execution holds a pooled connection rather than a thread.
+ * The connection pool and event loop are sized by the aws.lambda.http.*
+ * properties, and each invocation is bounded by its request deadline.
+ *
+ * Every payload carries test_cases_hash, the SHA-256 of the test-case set. With
+ * aws.lambda.test-case-handles enabled, a set that has already been sent once is
+ * referenced by hash only; a function instance that does not have it cached
+ * replies {"missing_test_cases": true} and the invocation is repeated with the
+ * full set.
+ *
+ * A function error means the submission crashed the function or ran it out
+ * of time, so it is returned as a judged result: "Time limit exceeded" for a
+ * function timeout, a runtime error otherwise. Only failures to invoke the
+ * function at all fail the execution.
+ *
+ * With aws.lambda.endpoint-override set, invocations go to that URL instead of
+ * AWS, e.g. the local stand-in in tools/lambda-local.
+ */
+@Component
+public class LambdaCodeExecutor implements CodeExecutor {
+
+    private final SdkAsyncHttpClient httpClient;
+
+    private final LambdaAsyncClient lambdaClient;
+
+    private final Duration defaultTimeout;
+
+    @Value("${aws.lambda.python.function-name}")
+    private String lambdaFunctionName;
+
+    @Value("${aws.lambda.test-case-handles:false}")
+    private boolean testCaseHandles;
+
+    private final Set<String> sentTestCases = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a new LambdaCodeExecutor with a LambdaAsyncClient.
+     */
+    public LambdaCodeExecutor(
+        @Value("${aws.credentials.access-key-id}") String accessKeyId,
+        @Value("${aws.credentials.secret-access-key}") String secretAccessKey,
+        @Value("${aws.region}") String region,
+        @Value("${aws.lambda.timeout-ms:30000}") long timeoutMs,
+        @Value("${aws.lambda.http.max-concurrency:1000}") int maxConcurrency,
+        @Value("${aws.lambda.http.max-pending-acquires:10000}") int maxPendingAcquires,
+        @Value("${aws.lambda.http.connection-timeout-ms:2000}") long connectionTimeoutMs,
+        @Value("${aws.lambda.http.read-timeout-ms:900000}") long readTimeoutMs,
+        @Value("${aws.lambda.http.event-loop-threads:0}") int eventLoopThreads,
+        @Value("${aws.lambda.endpoint-override:}") String endpointOverride
+    ) {
+        this.defaultTimeout = Duration.ofMillis(timeoutMs);
+
+        NettyNioAsyncHttpClient.Builder http = NettyNioAsyncHttpClient.builder()
+            .maxConcurrency(maxConcurrency)
+            .maxPendingConnectionAcquires(maxPendingAcquires)
+            .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+            // A synchronous invocation holds the response until the function returns;
+            // deadlines are enforced per call, so this only guards against dead connections.
+            .readTimeout(Duration.ofMillis(readTimeoutMs))
+            .tcpKeepAlive(true);
+        if (eventLoopThreads > 0) {
+            http.eventLoopGroupBuilder(SdkEventLoopGroup.builder().numberOfThreads(eventLoopThreads));
+        }
+        this.httpClient = http.build();
+
+        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, secretAccessKey);
+        LambdaAsyncClientBuilder lambda = LambdaAsyncClient.builder()
+            .region(Region.of(region))
+            .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+            .httpClient(httpClient);
+        if (!endpointOverride.isBlank()) {
+            lambda.endpointOverride(URI.create(endpointOverride));
+        }
+        this.lambdaClient = lambda.build();
+    }
+
+    @Override
+    public String getName() {
+        return "lambda";
+    }
+
+    @Override
+    public CompletableFuture<String> executeAsync(ExecutionRequest request, Duration timeout) {
+        Duration deadline = timeout == null ? defaultTimeout : timeout;
+        String hash = request.getTestCases().getHash();
+        boolean byHash = testCaseHandles && sentTestCases.contains(hash);
+        AtomicReference<CompletableFuture<?>> call = new AtomicReference<>();
+
+        CompletableFuture<String> execution = invoke(request, !byHash, deadline, call)
+            .thenCompose(result -> byHash && isMissingTestCases(result)
+                ? invoke(request, true, deadline, call)
+                : CompletableFuture.completedFuture(result))
+            .thenApply(result -> {
+                if (testCaseHandles) {
+                    sentTestCases.add(hash);
+                }
+                return result;
+            });
+
+        // Cancelling the execution aborts the HTTP call that is in flight.
+        execution.whenComplete((result, error) -> {
+            if (error instanceof CancellationException && call.get() != null) {
+                call.get().cancel(true);
+            }
+        });
+        return execution;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lambdaClient.close();
+        httpClient.close();
+    }
+
+    private CompletableFuture<String> invoke(ExecutionRequest request, boolean includeTestCases, Duration timeout, AtomicReference<CompletableFuture<?>> call) {
+        InvokeRequest invokeRequest;
+        try {
+            invokeRequest = InvokeRequest.builder()
+                .functionName(lambdaFunctionName)
+                .payload(SdkBytes.fromByteArrayUnsafe(JudgeJson.writePayload(request, includeTestCases)))
+                .overrideConfiguration(config -> config.apiCallTimeout(timeout))
+                .build();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<InvokeResponse> response = lambdaClient.invoke(invokeRequest);
+        call.set(response);
+        return response.thenApply(invokeResponse -> {
+            if (invokeResponse.functionError() != null) {
+                // The function itself crashed or timed out; its payload is an error report, not a result.
+                return functionErrorResult(invokeResponse.payload().asUtf8String());
+            } else if (invokeResponse.statusCode() == 200) {
+                return invokeResponse.payload().asUtf8String();
+            } else {
+                throw new RuntimeException("Lambda invocation failed with status code: " + invokeResponse.statusCode());
+            }
+        });
+    }
+
+    /**
+     * Turns a function error report ({"errorType": ..., "errorMessage": ...})
+     * into the result the submission earned.
+     */
+    static String functionErrorResult(String report) {
+        String type = null;
+        String message = report;
+        try {
+            Map<String, Object> fields = JudgeJson.readResult(report, false);
+            type = fields.get("errorType") instanceof String errorType ? errorType : null;
+            message = fields.get("errorMessage") instanceof String errorMessage ? errorMessage : report;
+        } catch (IOException e) {
+            // Not JSON; report the payload as it is.
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", false);
+        result.put("all_passed", false);
+        if (message.contains("Task timed out")) {
+            result.put("error", "Time limit exceeded");
+        } else {
+            result.put("error", "Runtime error" + (type == null ? "" : " (" + type + ")") + ":\n" + message.trim());
+        }
+        try {
+            return JudgeJson.writeResult(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isMissingTestCases(String result) {
+        // A miss is a tiny document; don't parse full results just to rule it out.
+        try {
+            return result.length() < 256 && Boolean.TRUE.equals(JudgeJson.readResult(result, false).get("missing_test_cases"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
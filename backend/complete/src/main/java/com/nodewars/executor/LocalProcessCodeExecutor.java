@@ -0,0 +1,566 @@
+package com.nodewars.executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.nodewars.objects.ExecutionRequest;
+import com.nodewars.objects.TestCaseSet;
+import com.nodewars.utils.JudgeJson;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes submissions on a pool of pre-warmed, long-lived worker processes.
+ *
+ * Each worker is one of the compilers/alpine images started with its worker.sh
+ * entrypoint, which compiles and runs jobs the same way entrypoint.sh does but
+ * stays alive between them. Jobs and results are exchanged over the worker's
+ * stdin/stdout using a small length-prefixed framing:
+ *
+ *   request:  JOB &lt;language&gt; &lt;code_bytes&gt; &lt;harness_bytes&gt; &lt;test_cases_bytes&gt; &lt;test_cases_hash&gt;\n...
+ *   progress: PROGRESS &lt;case_index&gt; &lt;1|0&gt;\n   (zero or more, before the response)
+ *   usage:    USAGE &lt;cpu_us&gt; &lt;wall_us&gt; &lt;peak_memory_kb&gt;\n   (once the program has run)
+ *   response: RESULT &lt;status&gt; &lt;exit_code&gt; &lt;body_bytes&gt; [retire]\n...
+ *
+ * A worker that answers with "retire" exits after the response and is replaced.
+ * PROGRESS frames carry the verdicts the harness reports while it runs and are
+ * passed to the request's ExecutionListener. The USAGE frame carries what the
+ * run cost, measured by the worker around the user's program only (cgroup v2
+ * accounting, or thread CPU time and heap growth in the Java worker); it is
+ * added to successful results as cpu_time_ms, wall_time_ms and peak_memory_kb.
+ * Fields the worker could not measure are sent as "-" and left out.
+ *
+ * For problems with an OutputChecker, the body is the values the harness
+ * printed for each test case; it is judged by OutputComparator as it is read
+ * off the worker's stdout instead of being read into memory first.
+ *
+ * Workers cache test-case sets by content hash, so a set is sent to each worker
+ * once and later jobs only reference its hash. If the worker has evicted the
+ * set it answers "missing_test_cases" and the job is resent with the body.
+ * seedTestCases pushes new sets to the idle workers with PUT frames.
+ *
+ * Talking to a worker is blocking I/O, so asynchronous executions are handed to
+ * a per-language dispatcher with one thread per worker; requests beyond that
+ * wait in the dispatcher's queue instead of holding threads of their own.
+ * Cancelling an execution drops it from that queue, or kills the worker (and
+ * the program it is running) if it has started; so does an execution running
+ * past its timeout. Workers started with "docker run" are given a container
+ * name, and killing one removes its container, since killing the docker client
+ * alone leaves the container and the program inside it running.
+ * Java uses the persistent JVM worker (judge-worker.sh) rather than worker.sh.
+ *
+ * Each pool keeps a warm target, set through setWarmCapacity (prewarm raises
+ * it to the pool size). Workers up to the target are started ahead of demand
+ * and replaced when they die; idle workers above it are stopped once they have
+ * sat unused for compiler.local.idle-ms.
+ *
+ * The command used to start a worker is configurable per language through
+ * compiler.local.command.&lt;language&gt;.
+ */
+@Component
+public class LocalProcessCodeExecutor implements CodeExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalProcessCodeExecutor.class);
+
+    private static final Map<String, String> IMAGES = Map.of(
+        "c", "c-compiler",
+        "cpp", "cpp-compiler",
+        "java", "java-compiler",
+        "python", "python2-compiler",
+        "python3", "python3-compiler"
+    );
+
+    private static final Map<String, String> ENTRYPOINTS = Map.of(
+        "java", "/workspace/judge-worker.sh"
+    );
+
+    private final Environment environment;
+
+    private final Map<String, WorkerPool> pools = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1, runnable -> {
+        Thread thread = new Thread(runnable, "local-executor-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int poolSize;
+
+    private final long timeoutMs;
+
+    private final long idleMs;
+
+    public LocalProcessCodeExecutor(
+        Environment environment,
+        @Value("${compiler.local.pool-size:2}") int poolSize,
+        @Value("${compiler.local.timeout-ms:15000}") long timeoutMs,
+        @Value("${compiler.local.idle-ms:60000}") long idleMs
+    ) {
+        this.environment = environment;
+        this.poolSize = poolSize;
+        this.timeoutMs = timeoutMs;
+        this.idleMs = idleMs;
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public void prewarm(String language) {
+        setWarmCapacity(language, poolSize);
+    }
+
+    @Override
+    public void setWarmCapacity(String language, int executions) {
+        WorkerPool pool = pool(language);
+        pool.warm = Math.max(0, Math.min(executions, poolSize));
+        scheduler.execute(() -> {
+            pool.fill();
+            pool.trim();
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> executeAsync(ExecutionRequest request, Duration timeout) {
+        CompletableFuture<String> execution = new CompletableFuture<>();
+        AtomicReference<Worker> running = new AtomicReference<>();
+        pool(request.getLanguage()).dispatcher.execute(() -> {
+            // Cancelled while queued: never start it.
+            if (execution.isDone()) {
+                return;
+            }
+            try {
+                execution.complete(execute(request, running, execution));
+            } catch (Exception e) {
+                execution.completeExceptionally(e);
+            }
+        });
+        // Cancelled or timed out while running: kill the worker, which frees its slot for the next job.
+        // A worker that finished the job was taken back out of running before the execution completed.
+        execution.whenComplete((result, error) -> {
+            Worker worker = running.getAndSet(null);
+            if (worker != null) {
+                logger.info("Killing " + request.getLanguage() + " worker running a "
+                    + (execution.isCancelled() ? "cancelled" : "timed out") + " job (" + request.getTag() + ")");
+                worker.destroy();
+            }
+        });
+        return timeout == null ? execution : execution.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String execute(ExecutionRequest request) throws Exception {
+        return execute(request, new AtomicReference<>(), new CompletableFuture<>());
+    }
+
+    private String execute(ExecutionRequest request, AtomicReference<Worker> running, CompletableFuture<String> execution) throws Exception {
+        WorkerPool pool = pool(request.getLanguage());
+        Worker worker = pool.acquire();
+        running.set(worker);
+        if (execution.isDone()) {
+            // Cancelled or timed out while waiting for a worker; hand it back unless it was killed for that.
+            pool.release(worker, running.compareAndSet(worker, null));
+            throw new CancellationException();
+        }
+
+        // The worker enforces its own run timeout; this only catches a wedged process.
+        ScheduledFuture<?> watchdog = scheduler.schedule(worker::destroy, timeoutMs, TimeUnit.MILLISECONDS);
+        boolean healthy = false;
+        try {
+            String result = worker.run(request);
+            healthy = !worker.retiring;
+            return result;
+        } catch (IOException e) {
+            if (execution.isDone()) {
+                throw new CancellationException();
+            }
+            if (watchdog.isDone()) {
+                return errorResult("Time limit exceeded");
+            }
+            logger.warn(request.getLanguage() + " worker failed mid-job", e);
+            return errorResult("Runtime error: the program terminated the judge process");
+        } finally {
+            watchdog.cancel(false);
+            // Whoever takes the worker out of running owns it; if the execution did, it killed the worker.
+            boolean owned = running.compareAndSet(worker, null);
+            pool.release(worker, healthy && owned);
+        }
+    }
+
+    @Override
+    public boolean supportsCheckers() {
+        return true;
+    }
+
+    @Override
+    public void seedTestCases(TestCaseSet testCases) {
+        pools.values().forEach(pool -> pool.seed(testCases));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pools.values().forEach(WorkerPool::close);
+    }
+
+    private WorkerPool pool(String language) {
+        if (!IMAGES.containsKey(language)) {
+            throw new IllegalArgumentException("Unsupported language: " + language);
+        }
+        return pools.computeIfAbsent(language, WorkerPool::new);
+    }
+
+    private List<String> command(String language) {
+        String command = environment.getProperty(
+            "compiler.local.command." + language,
+            "docker run -i --rm --network none --memory 256m --cpus 1 --pids-limit 64 "
+                + "--entrypoint " + ENTRYPOINTS.getOrDefault(language, "/workspace/worker.sh")
+                + " algowar/" + IMAGES.get(language)
+        );
+        return Arrays.asList(command.trim().split("\\s+"));
+    }
+
+    private String toResult(String status, int exitCode, byte[] body, String[] usage) throws IOException {
+        String output = new String(body, StandardCharsets.UTF_8).trim();
+        switch (status) {
+            case "ok":
+                if (output.startsWith("{")) {
+                    return usage == null ? output : withUsage(output, usage);
+                }
+                return errorResult("Harness produced no result");
+            case "compile_error":
+                return errorResult("Compilation error:\n" + output);
+            case "timeout":
+                return errorResult("Time limit exceeded");
+            default:
+                return errorResult("Runtime error (exit code " + exitCode + "):\n" + output);
+        }
+    }
+
+    private String withUsage(String output, String[] usage) throws IOException {
+        Map<String, Object> result = JudgeJson.readResult(output, true);
+        addUsage(result, usage);
+        return JudgeJson.writeResult(result);
+    }
+
+    private void addUsage(Map<String, Object> result, String[] usage) {
+        putMillis(result, "cpu_time_ms", usage[1]);
+        putMillis(result, "wall_time_ms", usage[2]);
+        if (!usage[3].equals("-")) {
+            result.put("peak_memory_kb", Long.parseLong(usage[3]));
+        }
+    }
+
+    private void putMillis(Map<String, Object> result, String field, String micros) {
+        if (!micros.equals("-")) {
+            result.put(field, Long.parseLong(micros) / 1000.0);
+        }
+    }
+
+    private String errorResult(String error) throws IOException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", false);
+        result.put("all_passed", false);
+        result.put("error", error);
+        return JudgeJson.writeResult(result);
+    }
+
+    /**
+     * The warm workers for one language. Workers are handed out one job at a
+     * time and, up to the warm target, replaced in the background whenever one dies.
+     */
+    private final class WorkerPool {
+        private final String language;
+        private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final ExecutorService dispatcher;
+        private volatile int warm;
+
+        WorkerPool(String language) {
+            this.language = language;
+            AtomicInteger threadCount = new AtomicInteger();
+            this.dispatcher = Executors.newFixedThreadPool(poolSize, runnable -> {
+                Thread thread = new Thread(runnable, "local-" + language + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::trim, idleMs, idleMs, TimeUnit.MILLISECONDS);
+        }
+
+        Worker acquire() throws Exception {
+            Worker worker = idle.poll();
+            while (worker == null || !worker.isAlive()) {
+                if (worker != null) {
+                    retire(worker);
+                }
+                if (size.incrementAndGet() <= poolSize) {
+                    try {
+                        return new Worker(language);
+                    } catch (IOException e) {
+                        size.decrementAndGet();
+                        throw e;
+                    }
+                }
+                size.decrementAndGet();
+                worker = idle.poll(timeoutMs, TimeUnit.MILLISECONDS);
+                if (worker == null) {
+                    throw new TimeoutException("No " + language + " worker became available");
+                }
+            }
+            return worker;
+        }
+
+        void release(Worker worker, boolean healthy) {
+            if (healthy && worker.isAlive()) {
+                worker.idleSince = System.currentTimeMillis();
+                idle.offer(worker);
+                return;
+            }
+            retire(worker);
+            scheduler.execute(this::fill);
+        }
+
+        void fill() {
+            while (size.incrementAndGet() <= warm) {
+                try {
+                    idle.offer(new Worker(language));
+                } catch (IOException e) {
+                    size.decrementAndGet();
+                    logger.error("Failed to start " + language + " worker", e);
+                    return;
+                }
+            }
+            size.decrementAndGet();
+        }
+
+        /**
+         * Stops idle workers above the warm target that have not run a job for idleMs.
+         */
+        void trim() {
+            long cutoff = System.currentTimeMillis() - idleMs;
+            int retired = 0;
+            for (Worker worker : idle) {
+                if (size.get() <= warm) {
+                    break;
+                }
+                if (worker.idleSince <= cutoff && idle.remove(worker)) {
+                    retire(worker);
+                    retired++;
+                }
+            }
+            if (retired > 0) {
+                logger.info("Stopped " + retired + " idle " + language + " worker(s), " + size.get() + " left");
+            }
+        }
+
+        void seed(TestCaseSet testCases) {
+            List<Worker> seeded = new ArrayList<>();
+            Worker worker;
+            while ((worker = idle.poll()) != null) {
+                boolean healthy = false;
+                try {
+                    worker.put(testCases);
+                    healthy = true;
+                } catch (IOException e) {
+                    logger.warn("Failed to seed test cases on " + language + " worker", e);
+                }
+                if (healthy) {
+                    seeded.add(worker);
+                } else {
+                    release(worker, false);
+                }
+            }
+            seeded.forEach(idle::offer);
+        }
+
+        void close() {
+            dispatcher.shutdownNow();
+            Worker worker;
+            while ((worker = idle.poll()) != null) {
+                retire(worker);
+            }
+        }
+
+        private void retire(Worker worker) {
+            worker.destroy();
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * One running worker process.
+     */
+    private final class Worker {
+        private final String language;
+        private final Process process;
+        private final List<String> removeContainer;
+        private final AtomicBoolean removed = new AtomicBoolean();
+        private final OutputStream stdin;
+        private final InputStream stdout;
+        private final Set<String> knownTestCases = new HashSet<>();
+        private boolean retiring;
+        private String[] usage;
+        private volatile long idleSince = System.currentTimeMillis();
+
+        Worker(String language) throws IOException {
+            this.language = language;
+            List<String> command = new ArrayList<>(command(language));
+            int run = command.indexOf("run");
+            if (run > 0 && command.get(run - 1).endsWith("docker")) {
+                String name = "algowar-" + language + "-" + UUID.randomUUID();
+                command.addAll(run + 1, List.of("--name", name));
+                this.removeContainer = new ArrayList<>(command.subList(0, run));
+                this.removeContainer.addAll(List.of("rm", "-f", name));
+            } else {
+                this.removeContainer = null;
+            }
+            this.process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+            this.stdin = process.getOutputStream();
+            this.stdout = process.getInputStream();
+            logger.info("Started " + language + " worker (pid " + process.pid() + ")");
+        }
+
+        String run(ExecutionRequest request) throws IOException {
+            byte[] code = bytes(request.getCode());
+            byte[] harness = bytes(request.getHarnessCode());
+            TestCaseSet testCases = request.getTestCases();
+
+            ExecutionListener listener = request.getListener();
+            String[] result = send(code, harness, testCases, !knownTestCases.contains(testCases.getHash()), listener);
+            if (result[1].equals("missing_test_cases")) {
+                result = send(code, harness, testCases, true, listener);
+            }
+            knownTestCases.add(testCases.getHash());
+
+            retiring = result.length > 4 && result[4].equals("retire");
+            int length = Integer.parseInt(result[3]);
+            if (request.getChecker() != null && result[1].equals("ok")) {
+                Map<String, Object> judged = OutputComparator.compare(stdout, length, testCases, request.getChecker(), listener);
+                if (usage != null) {
+                    addUsage(judged, usage);
+                }
+                return JudgeJson.writeResult(judged);
+            }
+            byte[] body = stdout.readNBytes(length);
+            return toResult(result[1], Integer.parseInt(result[2]), body, usage);
+        }
+
+        void put(TestCaseSet testCases) throws IOException {
+            if (knownTestCases.contains(testCases.getHash())) {
+                return;
+            }
+            stdin.write(("PUT " + testCases.getHash() + " " + testCases.getBytes().length + "\n").getBytes(StandardCharsets.US_ASCII));
+            stdin.write(testCases.getBytes());
+            stdin.flush();
+            readResultHeader(ExecutionListener.NONE);
+            knownTestCases.add(testCases.getHash());
+        }
+
+        private String[] send(byte[] code, byte[] harness, TestCaseSet testCases, boolean withBody, ExecutionListener listener) throws IOException {
+            byte[] body = withBody ? testCases.getBytes() : new byte[0];
+            String header = "JOB " + language + " " + code.length + " " + harness.length + " " + body.length + " " + testCases.getHash() + "\n";
+            stdin.write(header.getBytes(StandardCharsets.US_ASCII));
+            stdin.write(code);
+            stdin.write(harness);
+            stdin.write(body);
+            stdin.flush();
+            return readResultHeader(listener);
+        }
+
+        private String[] readResultHeader(ExecutionListener listener) throws IOException {
+            usage = null;
+            String[] result = readLine().split(" ");
+            while (true) {
+                if (result.length == 3 && result[0].equals("PROGRESS")) {
+                    try {
+                        listener.onTestCase(Integer.parseInt(result[1]), result[2].equals("1"));
+                    } catch (RuntimeException e) {
+                        logger.warn("Progress listener failed", e);
+                    }
+                } else if (result.length == 4 && result[0].equals("USAGE")) {
+                    usage = result;
+                } else {
+                    break;
+                }
+                result = readLine().split(" ");
+            }
+            if (result.length < 4 || !result[0].equals("RESULT")) {
+                throw new IOException("Malformed response from " + language + " worker: " + String.join(" ", result));
+            }
+            return result;
+        }
+
+        boolean isAlive() {
+            return process.isAlive();
+        }
+
+        void destroy() {
+            if (removeContainer != null && removed.compareAndSet(false, true)) {
+                // The container, and the program in it, would outlive the docker client.
+                try {
+                    new ProcessBuilder(removeContainer)
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                } catch (IOException e) {
+                    logger.warn("Failed to remove " + language + " worker container", e);
+                }
+            }
+            // The user's program runs in child processes that would outlive the worker.
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int next;
+            while ((next = stdout.read()) != '\n') {
+                if (next == -1) {
+                    throw new IOException(language + " worker exited");
+                }
+                line.write(next);
+            }
+            return line.toString(StandardCharsets.US_ASCII);
+        }
+
+        private byte[] bytes(String value) {
+            return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.nodewars.executor;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Decides whether a program's output for one test case is accepted.
+ *
+ * Problems with a checker have their output compared by the judge rather than
+ * by the harness: the harness prints the value its solution returned for each
+ * test case, and OutputComparator streams those values against the expected
+ * outputs, one checker call per test case. The built-in checkers are in
+ * OutputCheckers; custom checkers are Spring beans implementing this interface,
+ * selected by getName in the problem's checker column.
+ */
+public interface OutputChecker {
+
+    /**
+     * The name problems select this checker by.
+     */
+    String getName();
+
+    /**
+     * Compares one test case's output with the expected output.
+     *
+     * Both parsers are positioned on the first token of their value. The
+     * checker must leave each parser on the last token of its value, having
+     * consumed exactly that value, whether or not it matched (skipChildren
+     * finishes a value the checker has lost interest in).
+     *
+     * @param input the raw JSON of the test case's input
+     * @param expected the expected output
+     * @param actual the program's output
+     * @return null if the output is accepted, otherwise a short description of the first difference
+     * @throws IOException if either value could not be read
+     */
+    String check(String input, JsonParser expected, JsonParser actual) throws IOException;
+}
@@ -0,0 +1,280 @@
+package com.nodewars.executor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The built-in output checkers, selected by a problem's checker column:
+ *
+ *   exact          values must be equal; numbers compare by value (2 equals 2.0)
+ *   float:&lt;eps&gt;    numbers may differ by eps, absolutely or relative to the expected value
+ *   tokens         strings compare by their whitespace-separated tokens
+ *   unordered      a top-level array may list its elements in any order
+ *
+ * All of them walk both values token by token and stop at the first difference,
+ * so an output is never held in memory beyond the token being compared. The
+ * exception is unordered, which keeps the expected elements and one output
+ * element at a time, and gives up on an output element longer than any
+ * expected one.
+ */
+public final class OutputCheckers {
+
+    public static final OutputChecker EXACT = new ValueChecker("exact", -1, false);
+
+    public static final OutputChecker TOKENS = new ValueChecker("tokens", -1, true);
+
+    public static final OutputChecker UNORDERED = new UnorderedChecker();
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final int DESCRIPTION_CHARS = 64;
+
+    private OutputCheckers() {
+    }
+
+    /**
+     * Resolves a problem's checker column.
+     *
+     * @param spec "exact", "float:&lt;eps&gt;", "tokens", "unordered" or the name of a custom checker
+     * @param custom the custom checkers, by name
+     * @return the checker, or null for a blank spec (the harness judges the output)
+     * @throws IllegalArgumentException if the spec names no checker
+     */
+    public static OutputChecker forSpec(String spec, Map<String, OutputChecker> custom) {
+        if (spec == null || spec.isBlank()) {
+            return null;
+        }
+        spec = spec.trim();
+        switch (spec) {
+            case "exact":
+                return EXACT;
+            case "tokens":
+                return TOKENS;
+            case "unordered":
+                return UNORDERED;
+            default:
+                break;
+        }
+        if (spec.startsWith("float:")) {
+            try {
+                return new ValueChecker(spec, Math.abs(Double.parseDouble(spec.substring("float:".length()))), false);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid float tolerance: " + spec);
+            }
+        }
+        OutputChecker checker = custom.get(spec);
+        if (checker == null) {
+            throw new IllegalArgumentException("Unknown checker: " + spec);
+        }
+        return checker;
+    }
+
+    /**
+     * Compares two values token by token, leaving both parsers on the last
+     * token of their value. Custom checkers can use it for the parts of an
+     * output they do not judge themselves.
+     *
+     * @param expected the expected value, positioned on its first token
+     * @param actual the output value, positioned on its first token
+     * @param epsilon how far numbers may differ, or a negative value to compare them exactly
+     * @param tokenizeStrings whether strings compare by whitespace-separated tokens
+     * @return null if the values match, otherwise where and how they first differ
+     * @throws IOException if either value could not be read
+     */
+    public static String compareValues(JsonParser expected, JsonParser actual, double epsilon, boolean tokenizeStrings) throws IOException {
+        // Structures opened along the way; both parsers are at the same depth until they differ.
+        int depth = 0;
+        while (true) {
+            String mismatch = compareTokens(expected, actual, epsilon, tokenizeStrings);
+            if (mismatch != null) {
+                String path = actual.getParsingContext().pathAsPointer().toString();
+                finish(expected, depth);
+                finish(actual, depth);
+                return path.isEmpty() ? mismatch : "at " + path + ": " + mismatch;
+            }
+            JsonToken token = expected.currentToken();
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (depth == 0) {
+                return null;
+            }
+            expected.nextToken();
+            actual.nextToken();
+        }
+    }
+
+    private static String compareTokens(JsonParser expected, JsonParser actual, double epsilon, boolean tokenizeStrings) throws IOException {
+        JsonToken expectedToken = expected.currentToken();
+        JsonToken actualToken = actual.currentToken();
+        boolean matches;
+        if (expectedToken.isNumeric() && actualToken.isNumeric()) {
+            matches = epsilon < 0
+                ? expected.getDecimalValue().compareTo(actual.getDecimalValue()) == 0
+                : Math.abs(expected.getDoubleValue() - actual.getDoubleValue()) <= epsilon * Math.max(1, Math.abs(expected.getDoubleValue()));
+        } else if (expectedToken != actualToken) {
+            matches = false;
+        } else if (expectedToken == JsonToken.FIELD_NAME) {
+            matches = expected.currentName().equals(actual.currentName());
+        } else if (expectedToken == JsonToken.VALUE_STRING) {
+            matches = tokenizeStrings
+                ? Arrays.equals(expected.getText().trim().split("\\s+"), actual.getText().trim().split("\\s+"))
+                : expected.getText().equals(actual.getText());
+        } else {
+            matches = true;
+        }
+        return matches ? null : "expected " + describe(expected) + " but got " + describe(actual);
+    }
+
+    /**
+     * Moves a parser past the rest of a value it is depth structures deep into.
+     */
+    private static void finish(JsonParser parser, int depth) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isStructStart()) {
+            parser.skipChildren();
+        } else if (token.isStructEnd()) {
+            depth--;
+        }
+        while (depth > 0) {
+            token = parser.nextToken();
+            if (token == null) {
+                return;
+            }
+            if (token.isStructStart()) {
+                parser.skipChildren();
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+        }
+    }
+
+    private static String describe(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_ARRAY:
+                return "an array";
+            case START_OBJECT:
+                return "an object";
+            case END_ARRAY:
+                return "the end of the array";
+            case END_OBJECT:
+                return "the end of the object";
+            case FIELD_NAME:
+                return "field \"" + abbreviate(parser.currentName()) + "\"";
+            case VALUE_STRING:
+                return "\"" + abbreviate(parser.getText()) + "\"";
+            default:
+                return abbreviate(parser.getText());
+        }
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= DESCRIPTION_CHARS ? text : text.substring(0, DESCRIPTION_CHARS) + "...";
+    }
+
+    /**
+     * Writes the value the parser is positioned on as compact JSON, or skips it
+     * and returns null once the text grows past maxChars.
+     */
+    private static String canonical(JsonParser parser, int maxChars) throws IOException {
+        StringWriter text = new StringWriter();
+        try (JsonGenerator generator = FACTORY.createGenerator(text)) {
+            int depth = 0;
+            while (true) {
+                JsonToken token = parser.currentToken();
+                // finish() counts the structures around the current token, not one it opens or closes.
+                int around = depth;
+                generator.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+                generator.flush();
+                if (text.getBuffer().length() > maxChars) {
+                    finish(parser, around);
+                    return null;
+                }
+                if (depth == 0) {
+                    break;
+                }
+                parser.nextToken();
+            }
+        }
+        return text.toString();
+    }
+
+    private static final class ValueChecker implements OutputChecker {
+        private final String name;
+        private final double epsilon;
+        private final boolean tokenizeStrings;
+
+        ValueChecker(String name, double epsilon, boolean tokenizeStrings) {
+            this.name = name;
+            this.epsilon = epsilon;
+            this.tokenizeStrings = tokenizeStrings;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String check(String input, JsonParser expected, JsonParser actual) throws IOException {
+            return compareValues(expected, actual, epsilon, tokenizeStrings);
+        }
+    }
+
+    private static final class UnorderedChecker implements OutputChecker {
+
+        @Override
+        public String getName() {
+            return "unordered";
+        }
+
+        @Override
+        public String check(String input, JsonParser expected, JsonParser actual) throws IOException {
+            if (expected.currentToken() != JsonToken.START_ARRAY || actual.currentToken() != JsonToken.START_ARRAY) {
+                return compareValues(expected, actual, -1, false);
+            }
+
+            Map<String, Integer> remaining = new HashMap<>();
+            int expectedCount = 0;
+            int longest = 0;
+            while (expected.nextToken() != JsonToken.END_ARRAY) {
+                String element = canonical(expected, Integer.MAX_VALUE);
+                remaining.merge(element, 1, Integer::sum);
+                longest = Math.max(longest, element.length());
+                expectedCount++;
+            }
+
+            int actualCount = 0;
+            JsonToken token;
+            while ((token = actual.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    return "the output array is not closed";
+                }
+                String element = canonical(actual, longest);
+                if (element == null || remaining.merge(element, -1, Integer::sum) < 0) {
+                    while ((token = actual.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                        actual.skipChildren();
+                    }
+                    return "unexpected element " + (element == null ? "at index " + actualCount : abbreviate(element));
+                }
+                actualCount++;
+            }
+            return actualCount == expectedCount ? null : "expected " + expectedCount + " elements but got " + actualCount;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.nodewars.executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nodewars.objects.TestCaseSet;
+import com.nodewars.utils.JudgeJson;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Judges a program's output against a test-case set with an OutputChecker.
+ *
+ * The output is the sequence of JSON values the harness printed, one per test
+ * case. It is read straight off the worker's stream with a JsonParser and
+ * compared value by value with each test case's "output", so it is never held
+ * in memory as a whole. Each verdict goes to the ExecutionListener as soon as
+ * it is decided.
+ *
+ * The result is the usual executor result document, compact: the counts, and
+ * for the first failing test case its input, capped previews of the expected
+ * and actual values and the checker's description of the difference. Suites of
+ * at most RESULT_CASES test cases (a Run's shown cases) also get a per-case
+ * "results" array and are compared in full. Larger suites stop at the first
+ * mismatch, like a fail-fast submission, and the rest of the output is skipped
+ * unread.
+ */
+public final class OutputComparator {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputComparator.class);
+
+    static final int RESULT_CASES = 10;
+
+    static final int PREVIEW_CHARS = 1024;
+
+    // The worker's stream carries the next frames, so parsers must not close it.
+    private static final ObjectMapper MAPPER = new ObjectMapper(
+        JsonFactory.builder().disable(StreamReadFeature.AUTO_CLOSE_SOURCE).build()
+    );
+
+    private OutputComparator() {
+    }
+
+    /**
+     * Compares the next length bytes of a stream with the expected outputs.
+     * Exactly length bytes are consumed, whatever the verdict.
+     *
+     * @param output the stream the program's output is read from
+     * @param length the size of the output in bytes
+     * @param testCases the test cases the program ran
+     * @param checker decides each test case
+     * @param listener receives each verdict
+     * @return the result document's fields
+     * @throws IOException if the stream fails
+     */
+    public static Map<String, Object> compare(InputStream output, long length, TestCaseSet testCases, OutputChecker checker, ExecutionListener listener) throws IOException {
+        List<String> cases = testCases.getTestCases();
+        List<Map<String, Object>> results = cases.size() <= RESULT_CASES ? new ArrayList<>() : null;
+        Map<String, Object> firstFailure = null;
+        String error = null;
+        int passed = 0;
+
+        BoundedInputStream body = new BoundedInputStream(output, length);
+        try (PreviewParser actual = new PreviewParser(MAPPER.createParser(body))) {
+            for (int i = 0; i < cases.size(); i++) {
+                Map<String, String> testCase = JudgeJson.splitObject(cases.get(i));
+                String diff;
+                Object expectedPreview;
+                try (PreviewParser expected = new PreviewParser(MAPPER.createParser(testCase.getOrDefault("output", "null")))) {
+                    expected.startPreview();
+                    expected.nextToken();
+                    actual.startPreview();
+                    try {
+                        diff = actual.nextToken() == null
+                            ? "no output"
+                            : checker.check(testCase.get("input"), expected, actual);
+                    } catch (JsonProcessingException e) {
+                        diff = "output is not valid JSON: " + e.getOriginalMessage();
+                        error = "Output could not be read past test case " + (i + 1);
+                    } catch (RuntimeException e) {
+                        logger.warn("Checker " + checker.getName() + " failed", e);
+                        diff = "checker " + checker.getName() + " failed";
+                        error = "Checker failed on test case " + (i + 1);
+                    }
+                    expectedPreview = expected.preview();
+                }
+
+                boolean ok = diff == null;
+                passed += ok ? 1 : 0;
+                try {
+                    listener.onTestCase(i, ok);
+                } catch (RuntimeException e) {
+                    logger.warn("Progress listener failed", e);
+                }
+                if (results != null) {
+                    results.add(caseResult(i, ok, actual.preview(), expectedPreview, diff));
+                }
+                if (!ok && firstFailure == null) {
+                    firstFailure = failedCase(i, testCase.get("input"), actual.preview(), expectedPreview, diff);
+                }
+                if (error != null || (!ok && (results == null || diff.equals("no output")))) {
+                    break;
+                }
+            }
+
+            if (firstFailure == null && error == null) {
+                try {
+                    if (actual.nextToken() != null) {
+                        error = "Output has more values than there are test cases";
+                    }
+                } catch (JsonProcessingException e) {
+                    error = "Output has more values than there are test cases";
+                }
+            }
+        } finally {
+            body.drain();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", true);
+        result.put("all_passed", passed == cases.size() && error == null);
+        result.put("test_cases_passed", passed);
+        result.put("total_test_cases", cases.size());
+        if (error != null) {
+            result.put("error", error);
+        }
+        if (results != null) {
+            result.put("results", results);
+        }
+        if (firstFailure != null) {
+            result.put("first_case_failed", firstFailure);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> caseResult(int index, boolean passed, Object output, Object expected, String diff) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("case", index + 1);
+        result.put("passed", passed);
+        result.put("output", output);
+        result.put("expected", expected);
+        result.put("error", null);
+        if (diff != null) {
+            result.put("diff", diff);
+        }
+        return result;
+    }
+
+    /**
+     * Describes the first failing test case the way harnesses do: its input's
+     * fields, then the output, the expected output and the difference.
+     */
+    private static Map<String, Object> failedCase(int index, String input, Object output, Object expected, String diff) {
+        Map<String, Object> failed = new LinkedHashMap<>();
+        failed.put("case", index + 1);
+        failed.put("passed", false);
+        Object inputValue = input == null ? null : previewOf(input, input.length() > PREVIEW_CHARS);
+        if (inputValue instanceof Map) {
+            ((Map<?, ?>) inputValue).forEach((field, value) -> failed.putIfAbsent(String.valueOf(field), value));
+        } else if (inputValue != null) {
+            failed.put("input", inputValue);
+        }
+        failed.put("output", output);
+        failed.put("expected", expected);
+        failed.put("diff", diff);
+        return failed;
+    }
+
+    /**
+     * The value itself when its text is complete, otherwise the text cut short.
+     */
+    private static Object previewOf(String text, boolean truncated) {
+        if (!truncated) {
+            try {
+                return MAPPER.readValue(text, Object.class);
+            } catch (IOException e) {
+                // Cut short by a parse error; show what was read.
+            }
+        }
+        return (text.length() > PREVIEW_CHARS ? text.substring(0, PREVIEW_CHARS) : text) + "...";
+    }
+
+    /**
+     * A parser that copies the tokens of the current value, up to
+     * PREVIEW_CHARS of JSON, as they are read.
+     */
+    private static final class PreviewParser extends JsonParserDelegate {
+        private CappedWriter text;
+        private JsonGenerator generator;
+
+        PreviewParser(JsonParser parser) {
+            super(parser);
+        }
+
+        void startPreview() throws IOException {
+            text = new CappedWriter(PREVIEW_CHARS);
+            generator = MAPPER.getFactory().createGenerator(text);
+        }
+
+        Object preview() throws IOException {
+            if (text == null) {
+                return null;
+            }
+            generator.flush();
+            if (text.length() == 0) {
+                return null;
+            }
+            return previewOf(text.toString(), text.full);
+        }
+
+        @Override
+        public JsonToken nextToken() throws IOException {
+            JsonToken token = delegate.nextToken();
+            if (token != null && generator != null && !text.full) {
+                generator.copyCurrentEvent(delegate);
+                generator.flush();
+            }
+            return token;
+        }
+
+        @Override
+        public JsonToken nextValue() throws IOException {
+            JsonToken token = nextToken();
+            return token == JsonToken.FIELD_NAME ? nextToken() : token;
+        }
+
+        @Override
+        public JsonParser skipChildren() throws IOException {
+            JsonToken token = delegate.currentToken();
+            if (token == null || !token.isStructStart()) {
+                return this;
+            }
+            // Copy while the preview has room, then skip the rest without copying.
+            int depth = 1;
+            while (depth > 0 && !text.full) {
+                token = nextToken();
+                if (token == null) {
+                    return this;
+                }
+                depth += token.isStructStart() ? 1 : token.isStructEnd() ? -1 : 0;
+            }
+            while (depth > 0) {
+                token = delegate.nextToken();
+                if (token == null) {
+                    return this;
+                }
+                if (token.isStructStart()) {
+                    delegate.skipChildren();
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Keeps the first limit characters written to it and drops the rest.
+     */
+    private static final class CappedWriter extends Writer {
+        private final StringBuilder text = new StringBuilder();
+        private final int limit;
+        private boolean full;
+
+        CappedWriter(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            int room = limit - text.length();
+            if (length > room) {
+                full = true;
+                length = room;
+            }
+            text.append(chars, offset, length);
+        }
+
+        int length() {
+            return text.length();
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Reads at most a fixed number of bytes from the worker's stream.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int next = in.read();
+            if (next >= 0) {
+                remaining--;
+            }
+            return next;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * Skips what was not read, leaving the stream at the next frame.
+         */
+        void drain() throws IOException {
+            in.skipNBytes(remaining);
+            remaining = 0;
+        }
+    }
+}
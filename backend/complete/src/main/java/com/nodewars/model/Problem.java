@@ -61,6 +61,9 @@ public class Problem {
     @Column(name = "harness_code")
     private String harnessCode;
 
+    @Column(name = "checker")
+    private String checker;
+
     public Problem() {}
 
     public Problem(int id, String title, String slug, String description, String difficulty, String categories,
@@ -202,4 +205,12 @@ public class Problem {
     public void setHarnessCodes(String harnessCode) {
         this.harnessCode = harnessCode;
     }
+
+    public String getChecker() {
+        return checker;
+    }
+
+    public void setChecker(String checker) {
+        this.checker = checker;
+    }
 }
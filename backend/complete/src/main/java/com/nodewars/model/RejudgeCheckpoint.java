@@ -0,0 +1,111 @@
+package com.nodewars.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Represents the progress of a problem's re-judge in the database.
+ * A checkpoint is written in the same transaction as each batch of new
+ * verdicts, so a re-judge interrupted by a restart resumes after the last
+ * submission it committed.
+ */
+
+@Entity
+@Table(name = "rejudge_checkpoints")
+public class RejudgeCheckpoint {
+
+    public static final String RUNNING = "running";
+
+    public static final String DONE = "done";
+
+    public static final String FAILED = "failed";
+
+    @Id
+    @Column(name = "slug")
+    private String slug;
+
+    @Column(name = "test_cases_hash")
+    private String testCasesHash;
+
+    @Column(name = "status")
+    private String status;
+
+    @Column(name = "last_submission_id")
+    private long lastSubmissionId;
+
+    @Column(name = "judged")
+    private int judged;
+
+    @Column(name = "changed")
+    private int changed;
+
+    @Column(name = "accepted_delta")
+    private int acceptedDelta;
+
+    @Column(name = "updated_at")
+    private long updatedAt;
+
+    public RejudgeCheckpoint() {}
+
+    public RejudgeCheckpoint(String slug, String testCasesHash) {
+        this.slug = slug;
+        this.testCasesHash = testCasesHash;
+        this.status = RUNNING;
+        this.updatedAt = System.currentTimeMillis();
+    }
+
+    public String getSlug() {
+        return slug;
+    }
+
+    public String getTestCasesHash() {
+        return testCasesHash;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+        this.updatedAt = System.currentTimeMillis();
+    }
+
+    public long getLastSubmissionId() {
+        return lastSubmissionId;
+    }
+
+    public int getJudged() {
+        return judged;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public int getAcceptedDelta() {
+        return acceptedDelta;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Records a committed batch.
+     *
+     * @param lastSubmissionId the submission ID the re-judge is complete up to
+     * @param judged how many submissions the batch re-judged
+     * @param changed how many of them changed verdict
+     * @param acceptedDelta the change in accepted submissions
+     */
+    public void advance(long lastSubmissionId, int judged, int changed, int acceptedDelta) {
+        this.lastSubmissionId = lastSubmissionId;
+        this.judged += judged;
+        this.changed += changed;
+        this.acceptedDelta += acceptedDelta;
+        this.updatedAt = System.currentTimeMillis();
+    }
+}
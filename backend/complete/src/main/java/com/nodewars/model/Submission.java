@@ -0,0 +1,91 @@
+package com.nodewars.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Represents a judged submission in the database.
+ * This class keeps the submitted code, its verdict, and the hash of the
+ * test-case set the verdict was reached against, so submissions can be
+ * re-judged when a problem's test cases change.
+ */
+
+@Entity
+@Table(name = "submissions", indexes = @Index(name = "submissions_slug_id", columnList = "slug, id"))
+public class Submission {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private long id;
+
+    @Column(name = "slug")
+    private String slug;
+
+    @Column(name = "username")
+    private String username;
+
+    @Column(name = "language")
+    private String language;
+
+    @Column(name = "code", columnDefinition = "text")
+    private String code;
+
+    @Column(name = "accepted")
+    private boolean accepted;
+
+    @Column(name = "test_cases_hash")
+    private String testCasesHash;
+
+    @Column(name = "submitted_at")
+    private long submittedAt;
+
+    public Submission() {}
+
+    public Submission(String slug, String username, String language, String code, boolean accepted, String testCasesHash) {
+        this.slug = slug;
+        this.username = username;
+        this.language = language;
+        this.code = code;
+        this.accepted = accepted;
+        this.testCasesHash = testCasesHash;
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSlug() {
+        return slug;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    public String getTestCasesHash() {
+        return testCasesHash;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+}
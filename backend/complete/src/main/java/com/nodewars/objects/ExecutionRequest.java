@@ -0,0 +1,74 @@
+package com.nodewars.objects;
+
+import com.nodewars.executor.ExecutionListener;
+import com.nodewars.executor.OutputChecker;
+
+/**
+ * A single unit of work for a code executor: the user's code, the problem's
+ * harness for that language, and the test cases to run it against, plus an
+ * optional listener for verdicts streamed while it runs and the tag of the
+ * match it belongs to. Problems with an output checker have the executor judge
+ * the harness's output with it rather than the harness judge itself.
+ */
+public class ExecutionRequest {
+    private final String language;
+    private final String code;
+    private final String harnessCode;
+    private final TestCaseSet testCases;
+    private final ExecutionListener listener;
+    private final ExecutionTag tag;
+    private final OutputChecker checker;
+
+    public ExecutionRequest(String language, String code, String harnessCode, TestCaseSet testCases) {
+        this(language, code, harnessCode, testCases, ExecutionListener.NONE);
+    }
+
+    public ExecutionRequest(String language, String code, String harnessCode, TestCaseSet testCases, ExecutionListener listener) {
+        this(language, code, harnessCode, testCases, listener, ExecutionTag.NONE);
+    }
+
+    public ExecutionRequest(String language, String code, String harnessCode, TestCaseSet testCases, ExecutionListener listener, ExecutionTag tag) {
+        this(language, code, harnessCode, testCases, listener, tag, null);
+    }
+
+    public ExecutionRequest(String language, String code, String harnessCode, TestCaseSet testCases, ExecutionListener listener, ExecutionTag tag, OutputChecker checker) {
+        this.language = language;
+        this.code = code;
+        this.harnessCode = harnessCode;
+        this.testCases = testCases;
+        this.listener = listener == null ? ExecutionListener.NONE : listener;
+        this.tag = tag == null ? ExecutionTag.NONE : tag;
+        this.checker = checker;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getHarnessCode() {
+        return harnessCode;
+    }
+
+    public TestCaseSet getTestCases() {
+        return testCases;
+    }
+
+    public ExecutionListener getListener() {
+        return listener;
+    }
+
+    public ExecutionTag getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the checker the output is judged with, or null if the harness judges it
+     */
+    public OutputChecker getChecker() {
+        return checker;
+    }
+}
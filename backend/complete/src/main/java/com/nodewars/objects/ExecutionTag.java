@@ -0,0 +1,34 @@
+package com.nodewars.objects;
+
+/**
+ * Who an execution is for: the match room and player it was queued by.
+ * Executions tagged with a room are cancelled when the match ends.
+ */
+public class ExecutionTag {
+
+    /**
+     * The tag of executions outside a match (practice, re-judges).
+     */
+    public static final ExecutionTag NONE = new ExecutionTag(null, null);
+
+    private final String roomId;
+    private final String username;
+
+    public ExecutionTag(String roomId, String username) {
+        this.roomId = roomId;
+        this.username = username;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String toString() {
+        return roomId == null ? "-" : roomId + "/" + username;
+    }
+}
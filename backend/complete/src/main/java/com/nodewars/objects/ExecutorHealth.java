@@ -0,0 +1,198 @@
+package com.nodewars.objects;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency and error statistics for one executor backend, with a circuit
+ * breaker over its recent error rate.
+ *
+ * The latencies of successful executions are kept per language in a ring of
+ * the last SAMPLES, from which the rolling p95 is read, and counted into a
+ * fixed-bucket histogram. The outcome of each execution (success or backend
+ * error; cancellations are neither) goes into a ring of the last window
+ * executions. Once that ring holds at least minCalls outcomes and the share of
+ * errors reaches errorRate, the breaker opens and allowRequest refuses
+ * executions for openMs. After that a single trial execution is let through;
+ * its success closes the breaker and its failure opens it again.
+ */
+public class ExecutorHealth {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final long[] BUCKETS_MS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private static final int SAMPLES = 256;
+
+    // Fewer samples than this give no p95, so nothing is hedged on a cold backend.
+    private static final int MIN_SAMPLES = 20;
+
+    private final Map<String, long[]> latencies = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> latencyCounts = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS_MS.length + 1);
+
+    private final AtomicLong successes = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final int minCalls;
+
+    private final double errorRate;
+
+    private final long openMs;
+
+    // Breaker state, guarded by this.
+    private final boolean[] outcomes;
+    private int outcomeCursor;
+    private int outcomeCount;
+    private int errorCount;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public ExecutorHealth(int window, int minCalls, double errorRate, long openMs) {
+        this.outcomes = new boolean[window];
+        this.minCalls = minCalls;
+        this.errorRate = errorRate;
+        this.openMs = openMs;
+    }
+
+    /**
+     * Whether the breaker lets an execution through. While half-open, only
+     * the first caller gets through, as the trial.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.CLOSED || (state == State.HALF_OPEN && !trialInFlight)) {
+            trialInFlight = state == State.HALF_OPEN;
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    public void recordSuccess(String language, long latencyMs) {
+        long[] window = latencies.computeIfAbsent(language, key -> new long[SAMPLES]);
+        long sample = latencyCounts.computeIfAbsent(language, key -> new AtomicLong()).getAndIncrement();
+        synchronized (window) {
+            window[(int) (sample % SAMPLES)] = latencyMs;
+        }
+
+        int bucket = 0;
+        while (bucket < BUCKETS_MS.length && latencyMs > BUCKETS_MS[bucket]) {
+            bucket++;
+        }
+        histogram.incrementAndGet(bucket);
+        successes.incrementAndGet();
+        record(false);
+    }
+
+    public void recordError() {
+        errors.incrementAndGet();
+        record(true);
+    }
+
+    /**
+     * Records an execution that was cancelled before it finished, which says
+     * nothing about the backend but ends a trial.
+     */
+    public synchronized void recordCancelled() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * The rolling p95 latency of successful executions in a language.
+     *
+     * @param language the submission language
+     * @return the p95 in milliseconds, or -1 while there are too few samples
+     */
+    public long p95(String language) {
+        long[] window = latencies.get(language);
+        AtomicLong count = latencyCounts.get(language);
+        if (window == null || count.get() < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted;
+        synchronized (window) {
+            sorted = Arrays.copyOf(window, (int) Math.min(count.get(), SAMPLES));
+        }
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (this) {
+            metrics.put("breaker", state.name().toLowerCase());
+            metrics.put("recent_error_rate", outcomeCount == 0 ? 0.0 : (double) errorCount / outcomeCount);
+        }
+        metrics.put("successes", successes.get());
+        metrics.put("errors", errors.get());
+        metrics.put("rejected", rejected.get());
+
+        Map<String, Long> p95 = new LinkedHashMap<>();
+        latencies.keySet().stream().sorted().forEach(language -> p95.put(language, p95(language)));
+        metrics.put("p95_ms", p95);
+
+        // Cumulative counts keyed by upper bound, like a Prometheus histogram.
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        long cumulative = 0;
+        for (int i = 0; i <= BUCKETS_MS.length; i++) {
+            cumulative += histogram.get(i);
+            buckets.put(i < BUCKETS_MS.length ? "le_" + BUCKETS_MS[i] : "le_inf", cumulative);
+        }
+        metrics.put("latency_histogram_ms", buckets);
+        return metrics;
+    }
+
+    private synchronized void record(boolean error) {
+        if (state == State.HALF_OPEN) {
+            if (error) {
+                open();
+            } else {
+                state = State.CLOSED;
+                Arrays.fill(outcomes, false);
+                outcomeCursor = 0;
+                outcomeCount = 0;
+                errorCount = 0;
+            }
+            return;
+        }
+
+        if (outcomeCount == outcomes.length) {
+            errorCount -= outcomes[outcomeCursor] ? 1 : 0;
+        } else {
+            outcomeCount++;
+        }
+        outcomes[outcomeCursor] = error;
+        errorCount += error ? 1 : 0;
+        outcomeCursor = (outcomeCursor + 1) % outcomes.length;
+
+        if (state == State.CLOSED && outcomeCount >= minCalls && errorCount >= errorRate * outcomeCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        trialInFlight = false;
+    }
+}
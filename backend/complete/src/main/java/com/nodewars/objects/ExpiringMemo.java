@@ -0,0 +1,70 @@
+package com.nodewars.objects;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Values loaded once per key and kept for a fixed time, after which the next
+ * lookup loads them again. A value can also be dropped early with remove().
+ * Null values are not kept. Expired entries are swept out at most once per
+ * time-to-live, on a lookup.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ExpiringMemo<K, V> {
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final long ttlMs;
+
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * @param ttlMs how long a loaded value is kept, in milliseconds
+     */
+    public ExpiringMemo(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * @param key the key
+     * @param loader loads the value when there is none or it has expired
+     * @return the value, or null if the loader returned null
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+        Entry<V> entry = entries.compute(key, (k, current) -> {
+            if (current != null && current.expiresAt > now) {
+                return current;
+            }
+            V value = loader.apply(k);
+            return value == null ? null : new Entry<>(value, now + ttlMs);
+        });
+        return entry == null ? null : entry.value;
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last >= ttlMs && lastSweep.compareAndSet(last, now)) {
+            entries.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
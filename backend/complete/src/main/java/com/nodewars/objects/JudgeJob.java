@@ -0,0 +1,152 @@
+package com.nodewars.objects;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A run or submit request waiting in, or drained from, the judge queue.
+ */
+public class JudgeJob {
+
+    public enum Type { RUN, SUBMIT }
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    /**
+     * The scheduler lanes, from highest to lowest weight.
+     */
+    public enum Lane { MATCH_SUBMIT, MATCH_RUN, PRACTICE }
+
+    private final String id;
+    private final Type type;
+    private final String language;
+    private final String code;
+    private final String slug;
+    private final String socketId;
+    private final String username;
+    private final String clientAddress;
+    private final long createdAt;
+    private volatile Lane lane = Lane.PRACTICE;
+    private volatile String owner;
+    private volatile String roomId;
+    private volatile Status status;
+    private volatile Map<String, Object> result;
+    private volatile long finishedAt;
+
+    /**
+     * @param socketId the socket the client says it is on, or null; only trusted once it is found seated as the user
+     * @param username the signed-in user who sent the job, or null
+     * @param clientAddress the client's address
+     */
+    public JudgeJob(Type type, String language, String code, String slug, String socketId, String username, String clientAddress) {
+        this.id = UUID.randomUUID().toString();
+        this.type = type;
+        this.language = language;
+        this.code = code;
+        this.slug = slug;
+        this.socketId = socketId;
+        this.username = username;
+        this.clientAddress = clientAddress;
+        this.owner = username != null ? username : clientAddress;
+        this.createdAt = System.currentTimeMillis();
+        this.status = Status.QUEUED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getSlug() {
+        return slug;
+    }
+
+    public String getSocketId() {
+        return socketId;
+    }
+
+    /**
+     * The signed-in user who sent the job, or null.
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    public String getClientAddress() {
+        return clientAddress;
+    }
+
+    public Lane getLane() {
+        return lane;
+    }
+
+    /**
+     * The user the job is rate limited as: the signed-in user, or the
+     * client's address if there is none.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    /**
+     * Places the job in a scheduler lane on behalf of its owner and, for match
+     * traffic, its room.
+     */
+    public void route(Lane lane, String owner, String roomId) {
+        this.lane = lane;
+        this.owner = owner;
+        this.roomId = roomId;
+    }
+
+    /**
+     * The tag its executions carry: the room and player for match traffic.
+     */
+    public ExecutionTag getTag() {
+        return roomId == null ? ExecutionTag.NONE : new ExecutionTag(roomId, owner);
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Map<String, Object> getResult() {
+        return result;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void complete(Status status, Map<String, Object> result) {
+        this.result = result;
+        this.finishedAt = System.currentTimeMillis();
+        this.status = status;
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED || status == Status.CANCELLED;
+    }
+}
@@ -0,0 +1,79 @@
+package com.nodewars.objects;
+
+import com.nodewars.executor.ExecutionListener;
+
+import java.util.BitSet;
+
+/**
+ * Aggregates the verdicts of one submission into an accepted/total count and
+ * publishes it as judging progresses. Intermediate counts are published at
+ * most once per interval; the final count is always published.
+ */
+public class JudgeProgress implements ExecutionListener {
+
+    /**
+     * Receives aggregated progress.
+     */
+    @FunctionalInterface
+    public interface Publisher {
+        void publish(int accepted, int total);
+    }
+
+    private final Publisher publisher;
+    private final long intervalMs;
+    private final BitSet passed = new BitSet();
+    private int total;
+    private int lastAccepted = -1;
+    private long lastPublishedAt;
+    private boolean finished;
+
+    public JudgeProgress(Publisher publisher, long intervalMs) {
+        this.publisher = publisher;
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Starts tracking a suite and publishes 0 accepted.
+     *
+     * @param total the number of test cases in the suite
+     */
+    public synchronized void start(int total) {
+        this.total = total;
+        publish(true);
+    }
+
+    @Override
+    public synchronized void onTestCase(int index, boolean passed) {
+        if (finished) {
+            return;
+        }
+        this.passed.set(index, passed);
+        publish(false);
+    }
+
+    /**
+     * Publishes the authoritative count from the final result.
+     *
+     * @param accepted the number of test cases passed
+     * @param total the number of test cases in the suite
+     */
+    public synchronized void finish(int accepted, int total) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        this.total = total;
+        publisher.publish(accepted, total);
+    }
+
+    private void publish(boolean force) {
+        int accepted = passed.cardinality();
+        long now = System.currentTimeMillis();
+        if (accepted == lastAccepted || (!force && now - lastPublishedAt < intervalMs)) {
+            return;
+        }
+        lastAccepted = accepted;
+        lastPublishedAt = now;
+        publisher.publish(accepted, total);
+    }
+}
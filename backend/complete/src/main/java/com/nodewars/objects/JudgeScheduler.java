@@ -0,0 +1,301 @@
+package com.nodewars.objects;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides which queued judge job runs next.
+ *
+ * Jobs wait in one of three lanes (match submissions, match runs, practice).
+ * Lanes are served by smooth weighted round-robin, so under load each lane gets
+ * its weight's share of dispatches and a flood of practice runs only slows
+ * practice. Within a lane, jobs are grouped by room (by user for practice) and
+ * the groups take turns, so one busy room or user cannot hold up the others.
+ *
+ * Admission is limited per user and lane by a token bucket, and each lane's
+ * backlog is capped separately, so a full practice lane never turns away match
+ * traffic.
+ */
+public class JudgeScheduler {
+
+    private static final int WAIT_SAMPLES = 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Map<JudgeJob.Lane, Lane> lanes = new EnumMap<>(JudgeJob.Lane.class);
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    private final int capacity;
+    private final double tokensPerMs;
+    private final double burst;
+    private int size;
+    private long lastBucketSweep = System.currentTimeMillis();
+
+    /**
+     * @param weights the share of dispatches each lane gets while all are busy
+     * @param capacity the maximum number of jobs waiting in each lane
+     * @param tokensPerSecond the sustained rate at which one user may queue jobs in a lane
+     * @param burst how many jobs one user may queue at once in a lane
+     */
+    public JudgeScheduler(Map<JudgeJob.Lane, Integer> weights, int capacity, double tokensPerSecond, int burst) {
+        for (JudgeJob.Lane lane : JudgeJob.Lane.values()) {
+            lanes.put(lane, new Lane(Math.max(1, weights.getOrDefault(lane, 1))));
+        }
+        this.capacity = capacity;
+        this.tokensPerMs = tokensPerSecond / 1000;
+        this.burst = Math.max(1, burst);
+    }
+
+    /**
+     * Queues a job in its lane.
+     *
+     * @param job the job to queue
+     * @throws Throttled if the job's owner has used up their share of the lane
+     * @throws RejectedExecutionException if the lane is full
+     */
+    public void offer(JudgeJob job) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Lane lane = lanes.get(job.getLane());
+            sweepBuckets(now);
+            TokenBucket bucket = buckets.computeIfAbsent(job.getLane() + ":" + job.getOwner(), key -> new TokenBucket(now));
+            long retryAfterMs = bucket.take(now);
+            if (retryAfterMs > 0) {
+                lane.throttled++;
+                throw new Throttled(retryAfterMs);
+            }
+            if (lane.size >= capacity) {
+                bucket.refund();
+                lane.rejected++;
+                throw new RejectedExecutionException("Judge queue is full");
+            }
+
+            String group = job.getRoomId() != null ? job.getRoomId() : job.getOwner();
+            ArrayDeque<JudgeJob> queue = lane.groups.get(group);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                lane.groups.put(group, queue);
+                lane.turns.addLast(group);
+            }
+            queue.addLast(job);
+            lane.size++;
+            size++;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next job to run, waiting until one is queued.
+     *
+     * @return the next job
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public JudgeJob take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                available.await();
+            }
+
+            Lane next = null;
+            int totalWeight = 0;
+            for (Lane lane : lanes.values()) {
+                if (lane.size == 0) {
+                    continue;
+                }
+                lane.current += lane.weight;
+                totalWeight += lane.weight;
+                if (next == null || lane.current > next.current) {
+                    next = lane;
+                }
+            }
+            next.current -= totalWeight;
+
+            String group = next.turns.pollFirst();
+            ArrayDeque<JudgeJob> queue = next.groups.get(group);
+            JudgeJob job = queue.pollFirst();
+            if (queue.isEmpty()) {
+                next.groups.remove(group);
+            } else {
+                next.turns.addLast(group);
+            }
+            next.size--;
+            size--;
+
+            next.dispatched++;
+            next.waits[(int) (next.waitCursor++ % WAIT_SAMPLES)] = System.currentTimeMillis() - job.getCreatedAt();
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every job a match room has waiting, in all lanes.
+     *
+     * @param roomId the room
+     * @return the removed jobs
+     */
+    public List<JudgeJob> removeRoom(String roomId) {
+        List<JudgeJob> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Lane lane : lanes.values()) {
+                ArrayDeque<JudgeJob> queue = lane.groups.remove(roomId);
+                if (queue == null) {
+                    continue;
+                }
+                lane.turns.remove(roomId);
+                lane.size -= queue.size();
+                size -= queue.size();
+                removed.addAll(queue);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return removed;
+    }
+
+    /**
+     * The number of jobs waiting across all lanes.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Per-lane queue depth, counters and the wait times of recent dispatches.
+     *
+     * @return a map from lane name to its metrics
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            for (Map.Entry<JudgeJob.Lane, Lane> entry : lanes.entrySet()) {
+                Lane lane = entry.getValue();
+                long[] waits = Arrays.copyOf(lane.waits, (int) Math.min(lane.waitCursor, WAIT_SAMPLES));
+                Arrays.sort(waits);
+
+                Map<String, Object> laneMetrics = new LinkedHashMap<>();
+                laneMetrics.put("weight", lane.weight);
+                laneMetrics.put("queued", lane.size);
+                laneMetrics.put("groups", lane.groups.size());
+                laneMetrics.put("dispatched", lane.dispatched);
+                laneMetrics.put("throttled", lane.throttled);
+                laneMetrics.put("rejected", lane.rejected);
+                laneMetrics.put("wait_ms_p50", percentile(waits, 0.50));
+                laneMetrics.put("wait_ms_p99", percentile(waits, 0.99));
+                laneMetrics.put("wait_ms_max", waits.length == 0 ? 0 : waits[waits.length - 1]);
+                metrics.put(entry.getKey().name().toLowerCase(), laneMetrics);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return metrics;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * Drops buckets that have refilled completely; they are indistinguishable from new ones.
+     */
+    private void sweepBuckets(long now) {
+        if (now - lastBucketSweep < 60_000) {
+            return;
+        }
+        lastBucketSweep = now;
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    /**
+     * Thrown when a user queues jobs in a lane faster than its token bucket allows.
+     */
+    public static class Throttled extends RejectedExecutionException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterMs;
+
+        Throttled(long retryAfterMs) {
+            super("Too many judge requests, please slow down");
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+
+    private static final class Lane {
+        final int weight;
+        final Map<String, ArrayDeque<JudgeJob>> groups = new HashMap<>();
+        final ArrayDeque<String> turns = new ArrayDeque<>();
+        final long[] waits = new long[WAIT_SAMPLES];
+        long waitCursor;
+        int current;
+        int size;
+        long dispatched;
+        long throttled;
+        long rejected;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final class TokenBucket {
+        double tokens = burst;
+        long refilledAt;
+
+        TokenBucket(long now) {
+            this.refilledAt = now;
+        }
+
+        /**
+         * Takes a token, or returns how long until one is available.
+         */
+        long take(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return tokensPerMs <= 0 ? 60_000 : (long) Math.ceil((1 - tokens) / tokensPerMs);
+        }
+
+        void refund() {
+            tokens = Math.min(burst, tokens + 1);
+        }
+
+        boolean isFull(long now) {
+            refill(now);
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerMs);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.nodewars.objects;
+
+/**
+ * Published when a match ends: a player forfeits, a draw is accepted or the timer runs out.
+ */
+public class RoomClosedEvent {
+    private final String roomId;
+
+    public RoomClosedEvent(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.nodewars.objects;
+
+/**
+ * Published when a match room is created, before any player has joined it.
+ */
+public class RoomCreatedEvent {
+    private final String roomId;
+    private final String slug;
+
+    public RoomCreatedEvent(String roomId, String slug) {
+        this.roomId = roomId;
+        this.slug = slug;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public String getSlug() {
+        return slug;
+    }
+}
@@ -1,101 +1,211 @@
 package com.nodewars.objects;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
-import java.util.ArrayList;
-import java.util.List;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * A match room: its problem, its players and its timer.
+ *
+ * Players are kept by socket session in both directions (session to username
+ * and username to session), so a handler finds the player behind a session, or
+ * the session a player is connected on, without a scan. Reads are lock-free;
+ * seating and unseating players synchronize on the room, and are done through
+ * RoomRegistry, which keeps its session index in step.
+ *
+ * The match timer counts down to a deadline. Its next tick is a task on a
+ * shared scheduler, kept here so stopping the timer cancels it directly; a
+ * stopped timer keeps its remaining time and starts again from there. Each
+ * start is numbered, so a tick of an earlier run never acts on a later one.
+ */
 public class RoomDetails {
-    private static final Logger logger = LoggerFactory.getLogger(RoomDetails.class);
-    private int occupancy;
-    private HashMap<String, String> occupants;
-    private String slug;
-    private long remainingTime;
-    private boolean isTimerRunning;
-
-    public RoomDetails(int occupancy, String slug) {
-        this.occupancy = occupancy;
+    private final String id;
+    private final String slug;
+    private final Map<UUID, String> occupants = new ConcurrentHashMap<>();
+    private final Map<String, UUID> sessions = new ConcurrentHashMap<>();
+    private final Map<UUID, String> occupantsView = Collections.unmodifiableMap(occupants);
+    private volatile int occupancy;
+    private long remainingMillis;
+    private volatile boolean isTimerRunning;
+    private long deadline;
+    private long timerRun;
+    private ScheduledFuture<?> timer;
+    private boolean closed;
+
+    public RoomDetails(String id, String slug) {
+        this.id = id;
         this.slug = slug;
-        this.remainingTime = 900;
+        this.remainingMillis = 900_000;
         this.isTimerRunning = false;
-        this.occupants = new HashMap<>();
     }
 
-    public int getOccupancy() {
-        return occupancy;
+    public String getId() {
+        return id;
     }
 
-    public void setOccupancy(int occupancy) {
-        this.occupancy = occupancy;
+    public int getOccupancy() {
+        return occupancy;
     }
 
     public String getSlug() {
         return slug;
     }
 
-    public void setSlug(String slug) {
-        this.slug = slug;
-    }
-
+    /**
+     * @return the seconds left on the match timer, rounded up
+     */
     public long getRemainingTime() {
-        return remainingTime;
+        return (getRemainingMillis() + 999) / 1000;
     }
 
-    public void setRemainingTime(long remainingTime) {
-        this.remainingTime = remainingTime;
+    /**
+     * @return the milliseconds left on the match timer
+     */
+    public synchronized long getRemainingMillis() {
+        if (isTimerRunning) {
+            remainingMillis = Math.max(0, deadline - System.currentTimeMillis());
+        }
+        return remainingMillis;
     }
 
     public boolean isTimerRunning() {
         return isTimerRunning;
     }
 
-    public void setTimerRunning(boolean timerRunning) {
-        isTimerRunning = timerRunning;
+    /**
+     * @return whether the timer is still on the given run
+     */
+    public synchronized boolean isTimerRun(long run) {
+        return isTimerRunning && timerRun == run;
     }
 
-    public HashMap<String, String> getOccupants() {
-        return new HashMap<>(occupants);
+    /**
+     * @return when the running timer runs out, in epoch milliseconds
+     */
+    public synchronized long getDeadline() {
+        return deadline;
     }
 
-    public void setOccupants(HashMap<String, String> occupants) {
-        if (occupants.size() > occupancy) {
-            throw new IllegalArgumentException("Occupants list exceeds room capacity.");
+    /**
+     * Starts the timer from its remaining time.
+     *
+     * @return the number of this run, or -1 if it was already running or has run out
+     */
+    public synchronized long startTimer() {
+        if (isTimerRunning || closed || remainingMillis <= 0) {
+            return -1;
         }
-        this.occupants = new HashMap<>(occupants);
+        deadline = System.currentTimeMillis() + remainingMillis;
+        isTimerRunning = true;
+        return ++timerRun;
     }
 
-    public boolean addOccupant(String occupant_id, String username) {
-        logger.info("Attempting to add " + username + " with room occupancy " + occupants.size());
-        logger.info("occupancy " + occupancy);
+    /**
+     * Attaches the task for a run's next tick. It is cancelled at once if the
+     * run was stopped in the meantime.
+     */
+    public synchronized void setTimerTask(long run, ScheduledFuture<?> task) {
+        if (isTimerRun(run)) {
+            timer = task;
+        } else {
+            task.cancel(false);
+        }
+    }
 
-        for (Map.Entry<String, String> entry : occupants.entrySet()) {
-            if (entry.getValue().equals(username)) {
-                logger.info("Removing old client ID " + entry.getKey() + " for username " + username);
-                occupants.remove(entry.getKey());
-                break;
-            }
+    /**
+     * Stops the timer and cancels its next tick, keeping the time it had left.
+     *
+     * @return false if it was not running
+     */
+    public synchronized boolean stopTimer() {
+        if (!isTimerRunning) {
+            return false;
         }
+        getRemainingMillis();
+        isTimerRunning = false;
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        return true;
+    }
 
-        if (occupants.size() < 2) {
-            occupants.put(occupant_id, username);
-            return true;
-        } else {
-            throw new IllegalStateException("Room is already at full capacity.");
+    /**
+     * Stops a run that has reached its deadline.
+     *
+     * @return true if this call ended the run, so the match is over
+     */
+    public synchronized boolean endTimer(long run) {
+        return isTimerRun(run) && getRemainingMillis() <= 0 && stopTimer();
+    }
+
+    /**
+     * @return the players by session, a live read-only view
+     */
+    public Map<UUID, String> getOccupants() {
+        return occupantsView;
+    }
+
+    /**
+     * @param sessionId a socket session
+     * @return the player seated on that session, or null
+     */
+    public String getUsername(UUID sessionId) {
+        return occupants.get(sessionId);
+    }
+
+    /**
+     * @param username a player
+     * @return the session the player is seated on, or null
+     */
+    public UUID getSession(String username) {
+        return sessions.get(username);
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized void close() {
+        stopTimer();
+        closed = true;
+    }
+
+    /**
+     * Seats a player on a session. A player already in the room moves to the
+     * new session; anyone else takes a free seat if there is one.
+     *
+     * @return false if the room is full
+     */
+    synchronized boolean seat(UUID sessionId, String username) {
+        UUID previous = sessions.get(username);
+        if (previous != null) {
+            occupants.remove(previous);
+        } else if (occupants.size() >= 2) {
+            return false;
         }
+        String replaced = occupants.put(sessionId, username);
+        if (replaced != null && !replaced.equals(username)) {
+            sessions.remove(replaced);
+        }
+        sessions.put(username, sessionId);
+        occupancy = occupants.size();
+        return true;
     }
 
-    public boolean updateOccupant(String occupant_id, String username) {
-        for (Map.Entry<String, String> entry : occupants.entrySet()) {
-            if (entry.getValue().equals(username)) {
-                logger.info("Updating occupant: Removing old client ID " + entry.getKey() + " for username " + username);
-                occupants.remove(entry.getKey());
-                break;
+    /**
+     * Counts a seated session's player as gone. The seat is kept, so the
+     * player can come back on a new session. The timer stops once nobody is
+     * left.
+     */
+    synchronized void disconnect(UUID sessionId) {
+        if (occupants.containsKey(sessionId)) {
+            occupancy = Math.max(0, occupancy - 1);
+            if (occupancy == 0) {
+                stopTimer();
             }
         }
-
-        occupants.put(occupant_id, username);
-        return true;
     }
 }
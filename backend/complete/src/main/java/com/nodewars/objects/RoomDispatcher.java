@@ -0,0 +1,123 @@
+package com.nodewars.objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs socket event handlers off the socket threads, one room at a time.
+ *
+ * Each room with work gets a queue of handlers, and at most one pool thread
+ * drains it, so a room's events are handled in the order they arrived while
+ * different rooms proceed in parallel. A handler that blocks (on the database,
+ * on S3) holds up its own room only. The pool is bounded in threads and in the
+ * rooms waiting for one; once both are exhausted, events for rooms without
+ * work already queued are refused, so the caller can tell the client to retry.
+ * Handlers never run on the thread handing them over. Each room's backlog is
+ * capped as well.
+ */
+public class RoomDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomDispatcher.class);
+
+    private final ThreadPoolExecutor pool;
+
+    // A room is present while its queue is being drained; the queue holds the handlers not yet started.
+    private final Map<String, ArrayDeque<Runnable>> queues = new ConcurrentHashMap<>();
+
+    private final int roomBacklog;
+
+    // Rooms in the queues map, each running on or waiting for a pool thread.
+    private final AtomicInteger activeRooms = new AtomicInteger();
+
+    private final int maxActiveRooms;
+
+    /**
+     * @param threads the number of pool threads
+     * @param queueCapacity how many rooms may wait for a pool thread
+     * @param roomBacklog how many handlers may wait in one room
+     */
+    public RoomDispatcher(int threads, int queueCapacity, int roomBacklog) {
+        AtomicInteger threadCount = new AtomicInteger();
+        // Unbounded, but never holds more than maxActiveRooms drains: dispatch() admits rooms up to that.
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "room-dispatch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.pool.allowCoreThreadTimeOut(true);
+        this.roomBacklog = Math.max(1, roomBacklog);
+        this.maxActiveRooms = threads + Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Queues a handler behind the room's earlier ones.
+     *
+     * @return false if the handler was not queued, because the room's backlog
+     *         is full or every pool thread and queue slot is taken by other rooms
+     */
+    public boolean dispatch(String roomId, Runnable handler) {
+        boolean[] queued = new boolean[1];
+        boolean[] idle = new boolean[1];
+        queues.compute(roomId, (id, queue) -> {
+            if (queue == null) {
+                if (activeRooms.incrementAndGet() > maxActiveRooms) {
+                    activeRooms.decrementAndGet();
+                    return null;
+                }
+                queue = new ArrayDeque<>();
+                idle[0] = true;
+            }
+            if (queue.size() < roomBacklog) {
+                queue.add(handler);
+                queued[0] = true;
+            }
+            return queue;
+        });
+        if (idle[0]) {
+            try {
+                pool.execute(() -> drain(roomId));
+            } catch (RejectedExecutionException e) {
+                // Shut down; nothing will drain the room.
+                if (queues.remove(roomId) != null) {
+                    activeRooms.decrementAndGet();
+                }
+                return false;
+            }
+        }
+        return queued[0];
+    }
+
+    private void drain(String roomId) {
+        while (true) {
+            Runnable[] next = new Runnable[1];
+            queues.computeIfPresent(roomId, (id, queue) -> {
+                next[0] = queue.poll();
+                return next[0] == null ? null : queue;
+            });
+            if (next[0] == null) {
+                activeRooms.decrementAndGet();
+                return;
+            }
+            try {
+                next[0].run();
+            } catch (RuntimeException e) {
+                logger.error("Handler failed in room " + roomId, e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+package com.nodewars.objects;
+
+import java.util.List;
+
+/**
+ * Published when the second player joins a match room and its timer starts.
+ */
+public class RoomFullEvent {
+    private final String roomId;
+    private final String slug;
+    private final List<String> usernames;
+
+    public RoomFullEvent(String roomId, String slug, List<String> usernames) {
+        this.roomId = roomId;
+        this.slug = slug;
+        this.usernames = usernames;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public String getSlug() {
+        return slug;
+    }
+
+    public List<String> getUsernames() {
+        return usernames;
+    }
+}
@@ -0,0 +1,126 @@
+package com.nodewars.objects;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The open match rooms, safe to use from every socket thread.
+ *
+ * Rooms are kept by id, and every seated session is indexed to its room, so a
+ * socket event finds its room (and, through the room, its player) with two map
+ * lookups keyed by the session id it arrives with. Seating and unseating lock
+ * only the room involved.
+ */
+public class RoomRegistry {
+
+    /**
+     * The outcome of asking for a seat in a room.
+     */
+    public enum Join {
+        /** The player took a free seat. */
+        JOINED,
+        /** The player was already seated and moved to the new session. */
+        REJOINED,
+        /** The room has no free seat. */
+        FULL,
+        /** There is no such room. */
+        NO_ROOM
+    }
+
+    private final Map<String, RoomDetails> rooms = new ConcurrentHashMap<>();
+    private final Map<UUID, RoomDetails> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Opens a room.
+     *
+     * @return the new room, or null if the id is taken
+     */
+    public RoomDetails create(String roomId, String slug) {
+        RoomDetails room = new RoomDetails(roomId, slug);
+        return rooms.putIfAbsent(roomId, room) == null ? room : null;
+    }
+
+    /**
+     * @return the room, or null if it is not open
+     */
+    public RoomDetails get(String roomId) {
+        return rooms.get(roomId);
+    }
+
+    /**
+     * @return the room the session is seated in, or null
+     */
+    public RoomDetails roomOf(UUID sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * @return the player seated on the session, or null
+     */
+    public String usernameOf(UUID sessionId) {
+        RoomDetails room = sessions.get(sessionId);
+        return room == null ? null : room.getUsername(sessionId);
+    }
+
+    /**
+     * Seats a player in a room on a session. A session seated in another room
+     * leaves that room first.
+     */
+    public Join join(String roomId, UUID sessionId, String username) {
+        RoomDetails room = rooms.get(roomId);
+        if (room == null) {
+            return Join.NO_ROOM;
+        }
+        synchronized (room) {
+            if (room.isClosed()) {
+                return Join.NO_ROOM;
+            }
+            UUID previous = room.getSession(username);
+            if (!room.seat(sessionId, username)) {
+                return Join.FULL;
+            }
+            if (previous != null && !previous.equals(sessionId)) {
+                sessions.remove(previous, room);
+            }
+            RoomDetails left = sessions.put(sessionId, room);
+            if (left != null && left != room) {
+                left.disconnect(sessionId);
+            }
+            return previous == null ? Join.JOINED : Join.REJOINED;
+        }
+    }
+
+    /**
+     * Counts a session's player as gone from their room; they keep their seat.
+     *
+     * @return the room the session was seated in, or null
+     */
+    public RoomDetails disconnect(UUID sessionId) {
+        RoomDetails room = sessions.remove(sessionId);
+        if (room != null) {
+            room.disconnect(sessionId);
+        }
+        return room;
+    }
+
+    /**
+     * Closes a room and forgets its sessions.
+     *
+     * @return the room, or null if it was not open
+     */
+    public RoomDetails remove(String roomId) {
+        RoomDetails room = rooms.remove(roomId);
+        if (room != null) {
+            synchronized (room) {
+                room.close();
+                room.getOccupants().keySet().forEach(sessionId -> sessions.remove(sessionId, room));
+            }
+        }
+        return room;
+    }
+
+    public int size() {
+        return rooms.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.nodewars.objects;
+
+import com.nodewars.utils.JudgeJson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A problem's test cases as stored (a JSON array), together with the SHA-256
+ * content hash that identifies the set.
+ *
+ * The JSON is kept as raw text and its UTF-8 bytes; splitting the set into
+ * shards slices the text without binding the test cases to objects, and the
+ * shards are memoized alongside the set.
+ */
+public class TestCaseSet {
+    private final String json;
+    private final byte[] bytes;
+    private final String hash;
+    private volatile List<String> testCases;
+    private final Map<Integer, List<TestCaseSet>> shards = new ConcurrentHashMap<>();
+
+    public TestCaseSet(String json) {
+        this.json = json;
+        this.bytes = json.getBytes(StandardCharsets.UTF_8);
+        this.hash = sha256(bytes);
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the number of test cases in the set
+     * @throws UncheckedIOException if the set is not a JSON array
+     */
+    public int size() {
+        return testCases().size();
+    }
+
+    /**
+     * @return the raw JSON text of each test case, in order
+     * @throws UncheckedIOException if the set is not a JSON array
+     */
+    public List<String> getTestCases() {
+        return Collections.unmodifiableList(testCases());
+    }
+
+    /**
+     * Splits the set into consecutive shards of at most shardSize test cases.
+     *
+     * @param shardSize the maximum number of test cases per shard
+     * @return the shards, in order
+     * @throws UncheckedIOException if the set is not a JSON array
+     */
+    public List<TestCaseSet> getShards(int shardSize) {
+        return shards.computeIfAbsent(shardSize, size -> {
+            List<String> all = testCases();
+            List<TestCaseSet> result = new ArrayList<>();
+            for (int offset = 0; offset < all.size(); offset += size) {
+                List<String> shard = all.subList(offset, Math.min(offset + size, all.size()));
+                result.add(new TestCaseSet("[" + String.join(",", shard) + "]"));
+            }
+            return Collections.unmodifiableList(result);
+        });
+    }
+
+    private List<String> testCases() {
+        List<String> split = testCases;
+        if (split == null) {
+            try {
+                split = JudgeJson.splitArray(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            testCases = split;
+        }
+        return split;
+    }
+
+    private static String sha256(byte[] value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
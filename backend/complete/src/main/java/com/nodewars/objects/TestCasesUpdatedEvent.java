@@ -0,0 +1,16 @@
+package com.nodewars.objects;
+
+/**
+ * Published when a problem's test cases are replaced.
+ */
+public class TestCasesUpdatedEvent {
+    private final String slug;
+
+    public TestCasesUpdatedEvent(String slug) {
+        this.slug = slug;
+    }
+
+    public String getSlug() {
+        return slug;
+    }
+}
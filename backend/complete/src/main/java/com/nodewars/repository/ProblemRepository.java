@@ -36,6 +36,11 @@ public interface ProblemRepository extends JpaRepository<Problem, Integer> {
     @Query("SELECT p.harnessCode FROM Problem p WHERE p.slug = :slug")
     String getHarnessCode(@Param("slug") String slug);
 
+    // Query to pull the output checker for problem
+
+    @Query("SELECT p.checker FROM Problem p WHERE p.slug = :slug")
+    String getChecker(@Param("slug") String slug);
+
     // Query to pull title, difficulty, acceptance rate, and slug for problem from all problems
     @Query("SELECT p.title, p.difficulty, p.acceptanceRate, p.slug FROM Problem p")
     List<Object[]> getAllProblemsInfo();
@@ -81,4 +86,19 @@ public interface ProblemRepository extends JpaRepository<Problem, Integer> {
     @Transactional
     @Query("UPDATE Problem p SET p.acceptedSubmissions = :acceptedSubmissions WHERE p.slug = :slug")
     void updateAcceptedSubmissions(@Param("slug") String slug, @Param("acceptedSubmissions") int acceptedSubmissions);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Problem p SET p.acceptedSubmissions = p.acceptedSubmissions + :delta, "
+        + "p.acceptanceRate = CASE WHEN p.totalSubmissions > 0 THEN (p.acceptedSubmissions + :delta) * 100.0 / p.totalSubmissions ELSE 0 END "
+        + "WHERE p.slug = :slug")
+    void adjustAcceptedSubmissions(@Param("slug") String slug, @Param("delta") int delta);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Problem p SET p.totalSubmissions = p.totalSubmissions + 1, "
+        + "p.acceptedSubmissions = p.acceptedSubmissions + :accepted, "
+        + "p.acceptanceRate = (p.acceptedSubmissions + :accepted) * 100.0 / (p.totalSubmissions + 1) "
+        + "WHERE p.slug = :slug")
+    int recordSubmission(@Param("slug") String slug, @Param("accepted") int accepted);
 }
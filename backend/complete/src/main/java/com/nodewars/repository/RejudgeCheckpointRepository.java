@@ -0,0 +1,18 @@
+package com.nodewars.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.nodewars.model.RejudgeCheckpoint;
+
+/**
+ * JPA Repository interface for RejudgeCheckpoint entity operations.
+ */
+
+@Repository
+public interface RejudgeCheckpointRepository extends JpaRepository<RejudgeCheckpoint, String> {
+
+    List<RejudgeCheckpoint> findByStatus(String status);
+}
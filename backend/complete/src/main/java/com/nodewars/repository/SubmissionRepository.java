@@ -0,0 +1,34 @@
+package com.nodewars.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.nodewars.model.Submission;
+
+/**
+ * JPA Repository interface for Submission entity operations.
+ *
+ * This repository records judged submissions and pages through them, in ID
+ * order, when a problem is re-judged.
+ */
+
+@Repository
+public interface SubmissionRepository extends JpaRepository<Submission, Long> {
+
+    // Query to page through a problem's submissions that were judged against other test cases
+
+    @Query("SELECT s FROM Submission s WHERE s.slug = :slug AND s.id > :afterId AND s.testCasesHash <> :testCasesHash ORDER BY s.id")
+    List<Submission> findToRejudge(@Param("slug") String slug, @Param("afterId") long afterId, @Param("testCasesHash") String testCasesHash, Pageable page);
+
+    // Update queries (run inside the re-judge's batch transaction)
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Submission s SET s.accepted = :accepted, s.testCasesHash = :testCasesHash WHERE s.id IN :ids")
+    int updateVerdicts(@Param("ids") List<Long> ids, @Param("accepted") boolean accepted, @Param("testCasesHash") String testCasesHash);
+}
@@ -5,69 +5,620 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.lambda.LambdaClient;
-import software.amazon.awssdk.services.lambda.model.InvokeRequest;
-import software.amazon.awssdk.services.lambda.model.InvokeResponse;
-import software.amazon.awssdk.core.SdkBytes;
+import com.nodewars.executor.CodeExecutor;
+import com.nodewars.executor.ExecutionListener;
+import com.nodewars.executor.OutputChecker;
+import com.nodewars.objects.ExecutionRequest;
+import com.nodewars.objects.ExecutionTag;
+import com.nodewars.objects.ExecutorHealth;
+import com.nodewars.objects.TestCaseSet;
+import com.nodewars.utils.JudgeJson;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service class for managing compilation operations.
  * This class provides methods for code output retrieval and tests.
+ *
+ * Each language is routed to one of the available CodeExecutor backends
+ * ("lambda" or "local"), configured through compiler.executor.default and
+ * compiler.executor.languages (e.g. "java:local,cpp:local").
+ *
+ * Large test suites are split into shards of compiler.shard.size cases that
+ * run concurrently as separate executions and are merged back into a single
+ * result. Shards are slices of the stored test-case JSON, and only the
+ * summary fields of each shard's result are parsed.
+ *
+ * Executions are composed as CompletableFutures, so waiting on a backend
+ * does not hold a thread per in-flight execution.
+ *
+ * Every execution is timed and its outcome recorded in the backend's
+ * ExecutorHealth. Failing over is opt-in: with compiler.fallback.executor set
+ * (it is not by default), an execution that fails on another backend is
+ * retried on the fallback, and while a backend's circuit breaker is open (its
+ * recent error rate reached compiler.breaker.error-rate) its executions go
+ * straight to the fallback. With compiler.hedge.enabled as well, an execution
+ * still running after its backend's rolling p95 for the language is hedged: a
+ * duplicate is started on the fallback, the first result wins and the other
+ * execution is cancelled. At most compiler.hedge.max-in-flight hedges run at
+ * once. Requests with an output checker run on compiler.checker.executor
+ * (default "local") when the language's backend cannot run checkers.
+ *
+ * Executions tagged with a match room are tracked until they finish, so that
+ * cancelRoom can cancel them all when the match ends. Cancelling a judgement
+ * cancels its shards and hedges, which abort their backend calls or kill the
+ * workers running them.
  */
 
  @Service
  public class CompilerService {
 
-    private static final Logger logger = LoggerFactory.getLogger(S3Service.class);
+    private static final Logger logger = LoggerFactory.getLogger(CompilerService.class);
 
-    private final LambdaClient lambdaClient;
+    private final Map<String, CodeExecutor> executors = new HashMap<>();
 
-    @Value("${aws.lambda.python.function-name}")
-    private String lambdaFunctionName;
+    private final Map<String, String> languageExecutors = new HashMap<>();
+
+    private final String defaultExecutor;
+
+    private final ExecutorService seeder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "test-case-seeder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int shardSize;
+
+    private final Map<String, ExecutorHealth> health = new HashMap<>();
+
+    private final CodeExecutor fallback;
+
+    private final CodeExecutor checkerExecutor;
+
+    private final boolean hedgeEnabled;
+
+    private final long hedgeMinDelayMs;
+
+    private final Semaphore hedgeSlots;
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    private final AtomicLong failovers = new AtomicLong();
+
+    private final Map<String, Set<CompletableFuture<String>>> roomExecutions = new ConcurrentHashMap<>();
 
     /**
-     * Constructs a new CompilerService with a LambdaClient.
+     * Constructs a new CompilerService routing languages across the given executors.
      */
     public CompilerService(
-        @Value("${aws.credentials.access-key-id}") String accessKeyId,
-        @Value("${aws.credentials.secret-access-key}") String secretAccessKey,
-        @Value("${aws.region}") String region
+        List<CodeExecutor> executors,
+        @Value("${compiler.executor.default:lambda}") String defaultExecutor,
+        @Value("${compiler.executor.languages:}") String languageExecutors,
+        @Value("${compiler.shard.size:50}") int shardSize,
+        @Value("${compiler.fallback.executor:}") String fallbackExecutor,
+        @Value("${compiler.checker.executor:local}") String checkerExecutor,
+        @Value("${compiler.hedge.enabled:false}") boolean hedgeEnabled,
+        @Value("${compiler.hedge.min-delay-ms:500}") long hedgeMinDelayMs,
+        @Value("${compiler.hedge.max-in-flight:8}") int hedgeMaxInFlight,
+        @Value("${compiler.breaker.window:50}") int breakerWindow,
+        @Value("${compiler.breaker.min-calls:20}") int breakerMinCalls,
+        @Value("${compiler.breaker.error-rate:0.5}") double breakerErrorRate,
+        @Value("${compiler.breaker.open-ms:30000}") long breakerOpenMs
     ) {
-        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, secretAccessKey);
-        this.lambdaClient = LambdaClient.builder()
-            .region(Region.of(region))
-            .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-            .build();
-    }
- 
-     public String compileAndRun(String language, String code, String harnessCode, Object testCases) throws Exception {
-         Map<String, Object> payload = Map.of(
-             "user_code", code,
-             "harness_code", harnessCode,
-             "test_cases", testCases
-         );
- 
-         String jsonPayload = new ObjectMapper().writeValueAsString(payload);
- 
-         InvokeRequest invokeRequest = InvokeRequest.builder()
-             .functionName(lambdaFunctionName)
-             .payload(SdkBytes.fromUtf8String(jsonPayload))
-             .build();
- 
-         InvokeResponse response = lambdaClient.invoke(invokeRequest);
- 
-         if (response.statusCode() == 200) {
-             String result = response.payload().asUtf8String();
-             return result;
-         } else {
-             throw new RuntimeException("Lambda invocation failed with status code: " + response.statusCode());
-         }
-     }
+        this.shardSize = shardSize;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeMinDelayMs = hedgeMinDelayMs;
+        this.hedgeSlots = new Semaphore(hedgeMaxInFlight);
+
+        executors.forEach(executor -> {
+            this.executors.put(executor.getName(), executor);
+            this.health.put(executor.getName(), new ExecutorHealth(breakerWindow, breakerMinCalls, breakerErrorRate, breakerOpenMs));
+        });
+        this.defaultExecutor = defaultExecutor;
+
+        if (!fallbackExecutor.isBlank() && !this.executors.containsKey(fallbackExecutor)) {
+            throw new IllegalArgumentException("Unknown fallback executor: " + fallbackExecutor);
+        }
+        this.fallback = fallbackExecutor.isBlank() ? null : this.executors.get(fallbackExecutor);
+
+        if (!checkerExecutor.isBlank() && !this.executors.containsKey(checkerExecutor)) {
+            throw new IllegalArgumentException("Unknown checker executor: " + checkerExecutor);
+        }
+        this.checkerExecutor = checkerExecutor.isBlank() ? null : this.executors.get(checkerExecutor);
+
+        for (String mapping : languageExecutors.split(",")) {
+            if (mapping.isBlank()) {
+                continue;
+            }
+            String[] parts = mapping.trim().split(":");
+            if (parts.length != 2 || !this.executors.containsKey(parts[1])) {
+                throw new IllegalArgumentException("Invalid compiler.executor.languages entry: " + mapping);
+            }
+            this.languageExecutors.put(parts[0], parts[1]);
+        }
+
+        if (!this.executors.containsKey(defaultExecutor)) {
+            throw new IllegalArgumentException("Unknown default executor: " + defaultExecutor);
+        }
+
+        this.languageExecutors.forEach((language, executor) -> {
+            logger.info("Routing " + language + " submissions to the " + executor + " executor");
+            this.executors.get(executor).prewarm(language);
+        });
+    }
+
+    /**
+     * Returns the executor backend configured for a language.
+     *
+     * @param language the submission language
+     * @return the executor that runs submissions in that language
+     */
+    public CodeExecutor getExecutor(String language) {
+        return executors.get(languageExecutors.getOrDefault(language, defaultExecutor));
+    }
+
+    /**
+     * Returns the languages routed to an executor by compiler.executor.languages.
+     *
+     * @return the explicitly routed languages
+     */
+    public Set<String> getRoutedLanguages() {
+        return languageExecutors.keySet();
+    }
+
+    /**
+     * Sizes the warm capacity of the executor configured for a language.
+     *
+     * @param language the submission language
+     * @param executions the number of executions to keep warm
+     */
+    public void setWarmCapacity(String language, int executions) {
+        getExecutor(language).setWarmCapacity(language, executions);
+    }
+
+    /**
+     * Runs the test cases in a single execution.
+     *
+     * @param language the submission language
+     * @param code the user's code
+     * @param harnessCode the problem's harness for the language
+     * @param checker judges the harness's output, or null if the harness judges it
+     * @param testCases the test cases to run
+     * @param timeout the deadline for the execution, or null for the executor's default
+     * @param listener receives per-test-case verdicts as they are streamed
+     * @param tag the match room and player the execution is for
+     * @return a future of the raw JSON result document
+     */
+    public CompletableFuture<String> compileAndRunAsync(String language, String code, String harnessCode, OutputChecker checker, TestCaseSet testCases, Duration timeout, ExecutionListener listener, ExecutionTag tag) {
+        ExecutionRequest request = new ExecutionRequest(language, code, harnessCode, testCases, listener, tag, checker);
+        return track(request.getTag(), execute(request, timeout));
+    }
+
+    /**
+     * Runs the test cases in concurrent shards and merges the shard results.
+     * With failFast, shards after the first shard that does not pass are
+     * cancelled, so the merged counts stop at the first failing test case.
+     *
+     * The listener receives verdicts with indices into the whole suite. For a
+     * shard whose backend streamed nothing, its passed count is reported when
+     * the shard completes.
+     *
+     * @param language the submission language
+     * @param code the user's code
+     * @param harnessCode the problem's harness for the language
+     * @param checker judges the harness's output, or null if the harness judges it
+     * @param testCases the test cases to run
+     * @param failFast whether to cancel the remaining shards on the first failure
+     * @param timeout the deadline for each shard, or null for the executor's default
+     * @param listener receives per-test-case verdicts as they are judged
+     * @param tag the match room and player the execution is for
+     * @return a future of the merged JSON result document, without per-test-case
+     *         results unless the suite fit in a single shard
+     */
+    public CompletableFuture<String> compileAndRunShardedAsync(String language, String code, String harnessCode, OutputChecker checker, TestCaseSet testCases, boolean failFast, Duration timeout, ExecutionListener listener, ExecutionTag tag) {
+        List<TestCaseSet> shardSets = testCases.size() == 0 ? List.of(testCases) : testCases.getShards(shardSize);
+        List<AtomicBoolean> streamed = new ArrayList<>();
+        List<CompletableFuture<String>> executions = new ArrayList<>();
+        for (TestCaseSet shard : shardSets) {
+            int offset = executions.size() * shardSize;
+            AtomicBoolean shardStreamed = new AtomicBoolean();
+            streamed.add(shardStreamed);
+            ExecutionListener shardListener = (index, passed) -> {
+                shardStreamed.set(true);
+                listener.onTestCase(offset + index, passed);
+            };
+            executions.add(execute(new ExecutionRequest(language, code, harnessCode, shard, shardListener, tag, checker), timeout));
+        }
+
+        if (executions.size() == 1) {
+            return track(tag, cancelling(executions, executions.get(0).thenApply(result -> {
+                if (listener != ExecutionListener.NONE && !streamed.get(0).get()) {
+                    reportPassed(listener, 0, parse(result));
+                }
+                return result;
+            })));
+        }
+
+        Map<Integer, Map<String, Object>> results = new ConcurrentSkipListMap<>();
+        AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+        CompletableFuture<?>[] shards = new CompletableFuture<?>[executions.size()];
+
+        for (int i = 0; i < executions.size(); i++) {
+            int index = i;
+            shards[i] = executions.get(i).handle((result, error) -> {
+                if (error instanceof CancellationException) {
+                    return null;
+                }
+                if (error != null) {
+                    executions.forEach(execution -> execution.cancel(true));
+                    throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                }
+
+                Map<String, Object> shard = parse(result);
+                results.put(index, shard);
+                if (!streamed.get(index).get() && !(failFast && index > firstFailure.get())) {
+                    reportPassed(listener, index * shardSize, shard);
+                }
+                if (failFast && !Boolean.TRUE.equals(shard.get("all_passed")) && firstFailure.accumulateAndGet(index, Math::min) == index) {
+                    for (int later = index + 1; later < executions.size(); later++) {
+                        executions.get(later).cancel(true);
+                    }
+                }
+                return null;
+            });
+        }
+
+        return track(tag, cancelling(executions, CompletableFuture.allOf(shards).thenApply(done -> {
+            try {
+                return JudgeJson.writeResult(mergeShards(results, firstFailure.get(), testCases.size()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        })));
+    }
+
+    /**
+     * Cancels every execution tagged with a match room that has not finished yet.
+     *
+     * @param roomId the room whose match ended
+     * @return the number of executions cancelled
+     */
+    public int cancelRoom(String roomId) {
+        Set<CompletableFuture<String>> executions = roomExecutions.remove(roomId);
+        if (executions == null) {
+            return 0;
+        }
+        int cancelled = 0;
+        for (CompletableFuture<String> execution : executions) {
+            if (execution.cancel(true)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Pushes test-case sets, and the shards they are split into, to every
+     * executor backend in use, in the background.
+     *
+     * @param testCaseSets the test-case sets to seed
+     */
+    public void seedTestCases(TestCaseSet... testCaseSets) {
+        Set<CodeExecutor> inUse = new HashSet<>();
+        inUse.add(executors.get(defaultExecutor));
+        languageExecutors.values().forEach(name -> inUse.add(executors.get(name)));
+
+        seeder.execute(() -> {
+            for (TestCaseSet testCaseSet : testCaseSets) {
+                if (testCaseSet == null) {
+                    continue;
+                }
+                List<TestCaseSet> shards = testCaseSet.getShards(shardSize);
+                for (CodeExecutor executor : inUse) {
+                    executor.seedTestCases(testCaseSet);
+                    if (shards.size() > 1) {
+                        shards.forEach(executor::seedTestCases);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Reports each backend's breaker state, error counts, rolling p95 per
+     * language and latency histogram, and how often executions were hedged.
+     *
+     * @return the executor metrics, keyed by backend name
+     */
+    public Map<String, Object> getExecutorMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        health.keySet().stream().sorted().forEach(name -> metrics.put(name, health.get(name).metrics()));
+        metrics.put("hedges", hedges.get());
+        metrics.put("hedge_wins", hedgeWins.get());
+        metrics.put("failovers", failovers.get());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        seeder.shutdownNow();
+        hedgeTimer.shutdownNow();
+    }
+
+    /**
+     * Runs a request on the language's backend, or on the fallback while the
+     * backend's breaker is open. Once the execution fails, or outlives the
+     * backend's p95 when hedging is on, the same request is started on the
+     * fallback as well. Requests with an output checker go to the checker
+     * executor if the language's backend cannot run the checker.
+     */
+    private CompletableFuture<String> execute(ExecutionRequest request, Duration timeout) {
+        String language = request.getLanguage();
+        CodeExecutor primary = getExecutor(language);
+        if (request.getChecker() != null && !primary.supportsCheckers()) {
+            if (checkerExecutor == null || !checkerExecutor.supportsCheckers()) {
+                return CompletableFuture.failedFuture(new IllegalStateException(
+                    "No executor for " + language + " can judge with checker " + request.getChecker().getName()));
+            }
+            primary = checkerExecutor;
+        }
+        CodeExecutor secondary = fallback == null || primary == fallback || (request.getChecker() != null && !fallback.supportsCheckers()) ? null : fallback;
+
+        if (secondary != null && !health.get(primary.getName()).allowRequest()) {
+            failovers.incrementAndGet();
+            return timed(secondary, request, timeout);
+        }
+
+        CompletableFuture<String> first = timed(primary, request, timeout);
+        if (secondary == null) {
+            return first;
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        List<CompletableFuture<String>> attempts = new ArrayList<>(List.of(first));
+        // Attempts that have not failed yet; the result fails only when none are left.
+        AtomicInteger running = new AtomicInteger(1);
+        AtomicBoolean hedgeStarted = new AtomicBoolean();
+
+        Runnable hedge = () -> {
+            if (result.isDone() || !hedgeStarted.compareAndSet(false, true) || !hedgeSlots.tryAcquire()) {
+                return;
+            }
+            ExecutorHealth secondaryHealth = health.get(secondary.getName());
+            if (!secondaryHealth.allowRequest()) {
+                hedgeSlots.release();
+                return;
+            }
+            if (running.getAndUpdate(count -> count == 0 ? 0 : count + 1) == 0) {
+                // The first attempt already failed and settled the result.
+                hedgeSlots.release();
+                secondaryHealth.recordCancelled();
+                return;
+            }
+            hedges.incrementAndGet();
+            // The duplicate's verdicts would repeat the first attempt's, so it streams none.
+            ExecutionRequest duplicate = new ExecutionRequest(language, request.getCode(), request.getHarnessCode(), request.getTestCases(),
+                ExecutionListener.NONE, request.getTag(), request.getChecker());
+            CompletableFuture<String> second = timed(secondary, duplicate, timeout);
+            synchronized (attempts) {
+                attempts.add(second);
+            }
+            second.whenComplete((value, error) -> {
+                hedgeSlots.release();
+                settle(result, running, value, error, true);
+            });
+            if (result.isDone()) {
+                second.cancel(true);
+            }
+        };
+
+        first.whenComplete((value, error) -> {
+            if (error != null && !(unwrap(error) instanceof CancellationException)) {
+                hedge.run();
+            }
+            settle(result, running, value, error, false);
+        });
+
+        long p95 = health.get(primary.getName()).p95(language);
+        ScheduledFuture<?> hedgeTimeout = hedgeEnabled && p95 >= 0
+            ? hedgeTimer.schedule(hedge, Math.max(p95, hedgeMinDelayMs), TimeUnit.MILLISECONDS)
+            : null;
+
+        result.whenComplete((value, error) -> {
+            if (hedgeTimeout != null) {
+                hedgeTimeout.cancel(false);
+            }
+            synchronized (attempts) {
+                attempts.forEach(attempt -> attempt.cancel(true));
+            }
+        });
+        return result;
+    }
+
+    private void settle(CompletableFuture<String> result, AtomicInteger running, String value, Throwable error, boolean hedged) {
+        if (error == null) {
+            if (result.complete(value) && hedged) {
+                hedgeWins.incrementAndGet();
+            }
+        } else if (running.decrementAndGet() == 0) {
+            result.completeExceptionally(unwrap(error));
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Keeps a room's execution cancellable by cancelRoom until it finishes.
+     */
+    private CompletableFuture<String> track(ExecutionTag tag, CompletableFuture<String> execution) {
+        String roomId = tag.getRoomId();
+        if (roomId == null || execution.isDone()) {
+            return execution;
+        }
+        roomExecutions.computeIfAbsent(roomId, key -> ConcurrentHashMap.newKeySet()).add(execution);
+        execution.whenComplete((result, error) -> roomExecutions.computeIfPresent(roomId, (key, executions) -> {
+            executions.remove(execution);
+            return executions.isEmpty() ? null : executions;
+        }));
+        return execution;
+    }
+
+    /**
+     * Makes cancelling a judgement cancel the executions it is derived from,
+     * which a dependent CompletableFuture does not do by itself.
+     */
+    private static CompletableFuture<String> cancelling(List<CompletableFuture<String>> executions, CompletableFuture<String> judgement) {
+        judgement.whenComplete((result, error) -> {
+            if (judgement.isCancelled()) {
+                executions.forEach(execution -> execution.cancel(true));
+            }
+        });
+        return judgement;
+    }
+
+    /**
+     * Starts an execution and records its latency or failure in the backend's health.
+     */
+    private CompletableFuture<String> timed(CodeExecutor executor, ExecutionRequest request, Duration timeout) {
+        ExecutorHealth executorHealth = health.get(executor.getName());
+        long started = System.nanoTime();
+        CompletableFuture<String> execution = executor.executeAsync(request, timeout);
+        execution.whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+            if (cause == null) {
+                executorHealth.recordSuccess(request.getLanguage(), (System.nanoTime() - started) / 1_000_000);
+            } else if (cause instanceof CancellationException) {
+                executorHealth.recordCancelled();
+            } else {
+                executorHealth.recordError();
+            }
+        });
+        return execution;
+    }
+
+    private static void reportPassed(ExecutionListener listener, int offset, Map<String, Object> result) {
+        if (result.get("test_cases_passed") instanceof Number) {
+            int passed = ((Number) result.get("test_cases_passed")).intValue();
+            for (int i = 0; i < passed; i++) {
+                listener.onTestCase(offset + i, true);
+            }
+        }
+    }
+
+    private static Map<String, Object> parse(String result) {
+        try {
+            return JudgeJson.readResult(result, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merges per-shard results in shard order, up to and including the first failing shard.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> mergeShards(Map<Integer, Map<String, Object>> shards, int firstFailure, int totalTestCases) {
+        Map<String, Object> merged = new LinkedHashMap<>();
+        boolean success = true;
+        boolean allPassed = true;
+        int passed = 0;
+        double runtimeMs = 0;
+        Double cpuTimeMs = null;
+        Double wallTimeMs = null;
+        Long peakMemoryKb = null;
+
+        for (Map.Entry<Integer, Map<String, Object>> entry : shards.entrySet()) {
+            if (entry.getKey() > firstFailure) {
+                break;
+            }
+            Map<String, Object> shard = entry.getValue();
+            int offset = entry.getKey() * shardSize;
+
+            success &= !Boolean.FALSE.equals(shard.get("success"));
+            allPassed &= Boolean.TRUE.equals(shard.get("all_passed"));
+            if (shard.get("test_cases_passed") instanceof Number) {
+                passed += ((Number) shard.get("test_cases_passed")).intValue();
+            }
+            if (shard.get("runtime_ms") instanceof Number) {
+                runtimeMs += ((Number) shard.get("runtime_ms")).doubleValue();
+            }
+            // Shards run side by side, so their times add up to the whole suite's
+            // and the suite's memory is that of its hungriest shard.
+            if (shard.get("cpu_time_ms") instanceof Number) {
+                cpuTimeMs = (cpuTimeMs == null ? 0 : cpuTimeMs) + ((Number) shard.get("cpu_time_ms")).doubleValue();
+            }
+            if (shard.get("wall_time_ms") instanceof Number) {
+                wallTimeMs = (wallTimeMs == null ? 0 : wallTimeMs) + ((Number) shard.get("wall_time_ms")).doubleValue();
+            }
+            if (shard.get("peak_memory_kb") instanceof Number) {
+                peakMemoryKb = Math.max(peakMemoryKb == null ? 0 : peakMemoryKb, ((Number) shard.get("peak_memory_kb")).longValue());
+            }
+            if (shard.get("error") != null && !merged.containsKey("error")) {
+                merged.put("error", shard.get("error"));
+            }
+            if (shard.get("first_case_failed") instanceof Map && !merged.containsKey("first_case_failed")) {
+                merged.put("first_case_failed", withCaseOffset((Map<String, Object>) shard.get("first_case_failed"), offset));
+            }
+        }
+
+        merged.put("success", success);
+        merged.put("all_passed", allPassed);
+        merged.put("test_cases_passed", passed);
+        merged.put("total_test_cases", totalTestCases);
+        merged.put("runtime_ms", runtimeMs);
+        if (cpuTimeMs != null) {
+            merged.put("cpu_time_ms", cpuTimeMs);
+        }
+        if (wallTimeMs != null) {
+            merged.put("wall_time_ms", wallTimeMs);
+        }
+        if (peakMemoryKb != null) {
+            merged.put("peak_memory_kb", peakMemoryKb);
+        }
+        return merged;
+    }
+
+    private Map<String, Object> withCaseOffset(Map<String, Object> testCase, int offset) {
+        if (!(testCase.get("case") instanceof Number) || offset == 0) {
+            return testCase;
+        }
+        Map<String, Object> shifted = new LinkedHashMap<>(testCase);
+        shifted.put("case", ((Number) testCase.get("case")).intValue() + offset);
+        return shifted;
+    }
  }
@@ -0,0 +1,372 @@
+package com.nodewars.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.SocketIOServer;
+import com.nodewars.objects.JudgeJob;
+import com.nodewars.objects.JudgeProgress;
+import com.nodewars.objects.JudgeScheduler;
+import com.nodewars.objects.RoomClosedEvent;
+import com.nodewars.objects.RoomCreatedEvent;
+import com.nodewars.objects.RoomDetails;
+import com.nodewars.objects.RoomRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service class for the asynchronous judge queue.
+ * Runs and submissions are accepted into a JudgeScheduler and drained by a
+ * fixed pool of judge threads. A job goes to the match lanes only if the
+ * socket it names is seated in a match room as the signed-in user who sent it;
+ * everything else goes to the practice lane, rate limited per user. A judge
+ * thread waits for one of the judge.queue.max-in-flight execution slots before
+ * asking the scheduler for a job, so the scheduler's order decides who gets
+ * each free slot. The execution itself completes asynchronously. Finished
+ * results of match jobs are pushed to the player's socket (event
+ * "judge_result"), and all results are kept for polling until they expire.
+ *
+ * While a submission from a player in a match is judged, its accepted count is
+ * published to the match room through RoomStateService, at most once per
+ * judge.progress.interval-ms.
+ *
+ * When a match ends, the room's queued jobs are dropped and its running
+ * executions cancelled; both finish as "cancelled", and the freed slots go to
+ * the next jobs in line. Jobs from the room that a judge thread picks up
+ * after that are cancelled before they start.
+ */
+
+@Service
+public class JudgeQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JudgeQueueService.class);
+
+    @Autowired
+    private SubmissionService submissionService;
+
+    @Autowired
+    private CompilerService compilerService;
+
+    @Lazy
+    @Autowired
+    private SocketIOServer socketIOServer;
+
+    @Autowired
+    private RoomStateService roomStateService;
+
+    @Autowired
+    private RoomRegistry rooms;
+
+    private final Map<String, JudgeJob> jobs = new ConcurrentHashMap<>();
+
+    // Rooms whose match has ended, with when it ended.
+    private final Map<String, Long> closedRooms = new ConcurrentHashMap<>();
+
+    private final JudgeScheduler scheduler;
+
+    private final ExecutorService judgeThreads;
+
+    private final int workers;
+
+    private final long resultTtlMs;
+
+    private final int maxInFlight;
+
+    private final Semaphore inFlight;
+
+    @Value("${judge.progress.interval-ms:100}")
+    private long progressIntervalMs;
+
+    private final AtomicLong averageJobMs = new AtomicLong(1000);
+
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    public JudgeQueueService(
+        @Value("${judge.queue.workers:8}") int workers,
+        @Value("${judge.queue.capacity:200}") int capacity,
+        @Value("${judge.queue.result-ttl-ms:300000}") long resultTtlMs,
+        @Value("${judge.queue.max-in-flight:1000}") int maxInFlight,
+        @Value("${judge.scheduler.weight.match-submit:16}") int matchSubmitWeight,
+        @Value("${judge.scheduler.weight.match-run:4}") int matchRunWeight,
+        @Value("${judge.scheduler.weight.practice:1}") int practiceWeight,
+        @Value("${judge.scheduler.user-rate:1}") double userRate,
+        @Value("${judge.scheduler.user-burst:10}") int userBurst
+    ) {
+        this.scheduler = new JudgeScheduler(Map.of(
+            JudgeJob.Lane.MATCH_SUBMIT, matchSubmitWeight,
+            JudgeJob.Lane.MATCH_RUN, matchRunWeight,
+            JudgeJob.Lane.PRACTICE, practiceWeight
+        ), capacity, userRate, userBurst);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.judgeThreads = Executors.newFixedThreadPool(workers, runnable -> new Thread(runnable, "judge-" + threadCount.incrementAndGet()));
+        this.workers = workers;
+        this.resultTtlMs = resultTtlMs;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < workers; i++) {
+            judgeThreads.execute(this::dispatch);
+        }
+    }
+
+    /**
+     * Accepts a job into the queue.
+     *
+     * @param job the job to run
+     * @return the accepted job
+     * @throws JudgeScheduler.Throttled if the job's owner is queueing jobs too quickly
+     * @throws RejectedExecutionException if the job's lane is full
+     */
+    public JudgeJob enqueue(JudgeJob job) {
+        sweepExpiredJobs();
+        route(job);
+
+        jobs.put(job.getId(), job);
+        try {
+            scheduler.offer(job);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Cancels a finished match's queued jobs and running executions.
+     */
+    @EventListener
+    public void onRoomClosed(RoomClosedEvent event) {
+        String roomId = event.getRoomId();
+        closedRooms.put(roomId, System.currentTimeMillis());
+
+        List<JudgeJob> queued = scheduler.removeRoom(roomId);
+        queued.forEach(this::cancel);
+        int running = compilerService.cancelRoom(roomId);
+        if (!queued.isEmpty() || running > 0) {
+            logger.info("Match in room " + roomId + " ended: dropped " + queued.size() + " queued job(s), cancelled " + running + " running");
+        }
+    }
+
+    @EventListener
+    public void onRoomCreated(RoomCreatedEvent event) {
+        // Room IDs can be reused once the previous match is over.
+        closedRooms.remove(event.getRoomId());
+    }
+
+    /**
+     * Retrieves a queued, running or recently finished job.
+     *
+     * @param jobId the job ID
+     * @return the job, or null if it is unknown or expired
+     */
+    public JudgeJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Estimates how long a rejected client should wait before retrying.
+     *
+     * @return the suggested wait in milliseconds
+     */
+    public long getRetryAfterMs() {
+        int queued = scheduler.size();
+        int slots = Math.max(1, inFlight.availablePermits() + workers);
+        return Math.max(1000, (queued / slots + 1) * averageJobMs.get());
+    }
+
+    /**
+     * Reports execution slot usage, per scheduler lane queue depth and wait times,
+     * and per executor backend latency histograms and breaker state.
+     *
+     * @return the queue metrics
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("in_flight", maxInFlight - inFlight.availablePermits());
+        metrics.put("max_in_flight", maxInFlight);
+        metrics.put("queued", scheduler.size());
+        metrics.put("average_job_ms", averageJobMs.get());
+        metrics.put("lanes", scheduler.metrics());
+        metrics.put("executors", compilerService.getExecutorMetrics());
+        return metrics;
+    }
+
+    /**
+     * Builds the client-facing view of a job.
+     *
+     * @param job the job
+     * @return a map with the job ID, status and, once finished, the result
+     */
+    public Map<String, Object> toResponse(JudgeJob job) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("jobId", job.getId());
+        response.put("type", job.getType().name().toLowerCase());
+        response.put("status", job.getStatus().name().toLowerCase());
+        if (job.isFinished()) {
+            response.put("result", job.getResult());
+        }
+        return response;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        judgeThreads.shutdownNow();
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // Take the slot first, so the job is chosen only once it can start.
+                inFlight.acquire();
+                JudgeJob job;
+                try {
+                    job = scheduler.take();
+                } catch (InterruptedException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                process(job);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("Error dispatching judge job", e);
+            }
+        }
+    }
+
+    private void route(JudgeJob job) {
+        // The socket ID comes from the request body; it counts only if the room has it seated as the sender.
+        UUID sessionId = sessionOf(job);
+        RoomDetails room = sessionId == null ? null : rooms.roomOf(sessionId);
+        if (room != null && job.getUsername() != null && job.getUsername().equals(room.getUsername(sessionId))) {
+            job.route(job.getType() == JudgeJob.Type.SUBMIT ? JudgeJob.Lane.MATCH_SUBMIT : JudgeJob.Lane.MATCH_RUN, job.getUsername(), room.getId());
+        } else {
+            job.route(JudgeJob.Lane.PRACTICE, job.getOwner(), null);
+        }
+    }
+
+    private void process(JudgeJob job) {
+        if (isClosed(job)) {
+            inFlight.release();
+            cancel(job);
+            return;
+        }
+        job.setStatus(JudgeJob.Status.RUNNING);
+        long start = System.currentTimeMillis();
+
+        CompletableFuture<Map<String, Object>> execution;
+        try {
+            execution = job.getType() == JudgeJob.Type.RUN
+                ? submissionService.run(job.getLanguage(), job.getCode(), job.getSlug(), job.getTag())
+                : submissionService.submit(job.getLanguage(), job.getCode(), job.getSlug(), job.getTag(), progressFor(job));
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+        if (isClosed(job)) {
+            // The match ended while the execution was being started.
+            compilerService.cancelRoom(job.getRoomId());
+        }
+
+        execution.whenComplete((result, error) -> {
+            inFlight.release();
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (error == null) {
+                job.complete(JudgeJob.Status.DONE, result);
+            } else if (cause instanceof CancellationException) {
+                job.complete(JudgeJob.Status.CANCELLED, matchEnded());
+            } else {
+                logger.error("Error during code execution", cause);
+                Map<String, Object> failure = new LinkedHashMap<>();
+                failure.put("success", false);
+                failure.put("error", cause instanceof TimeoutException ? "Execution deadline exceeded" : String.valueOf(cause.getMessage()));
+                job.complete(JudgeJob.Status.FAILED, failure);
+            }
+
+            long elapsed = System.currentTimeMillis() - start;
+            averageJobMs.updateAndGet(average -> (average * 7 + elapsed) / 8);
+
+            push(job);
+        });
+    }
+
+    private boolean isClosed(JudgeJob job) {
+        return job.getRoomId() != null && closedRooms.containsKey(job.getRoomId());
+    }
+
+    private void cancel(JudgeJob job) {
+        job.complete(JudgeJob.Status.CANCELLED, matchEnded());
+        push(job);
+    }
+
+    private Map<String, Object> matchEnded() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", false);
+        result.put("error", "Match ended");
+        return result;
+    }
+
+    private JudgeProgress progressFor(JudgeJob job) {
+        if (job.getRoomId() == null) {
+            return null;
+        }
+        String roomId = job.getRoomId();
+        String username = job.getOwner();
+        return new JudgeProgress((accepted, total) -> roomStateService.updateTestCases(roomId, username, accepted, total), progressIntervalMs);
+    }
+
+    private UUID sessionOf(JudgeJob job) {
+        if (job.getSocketId() == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(job.getSocketId());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid socket ID for job " + job.getId() + ": " + job.getSocketId());
+            return null;
+        }
+    }
+
+    private void push(JudgeJob job) {
+        // Only a match job's socket was checked to belong to the sender.
+        SocketIOClient client = job.getRoomId() == null ? null : socketIOServer.getClient(sessionOf(job));
+        if (client != null) {
+            client.sendEvent("judge_result", toResponse(job));
+        }
+    }
+
+    private void sweepExpiredJobs() {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last < 10_000 || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        jobs.values().removeIf(job -> job.isFinished() && now - job.getFinishedAt() > resultTtlMs);
+        closedRooms.values().removeIf(closedAt -> now - closedAt > resultTtlMs);
+    }
+}
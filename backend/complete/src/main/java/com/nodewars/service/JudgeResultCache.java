@@ -0,0 +1,137 @@
+package com.nodewars.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, content-addressed cache of judge results.
+ *
+ * Results are keyed by a SHA-256 of everything that determines them (mode,
+ * language, user code, harness code and the test-case set's hash), so re-running
+ * byte-identical code skips execution entirely. Entries are evicted least
+ * recently used once their combined size exceeds compiler.cache.max-bytes,
+ * and all entries of a problem are dropped when its test cases change.
+ */
+@Component
+public class JudgeResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JudgeResultCache.class);
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final long maxBytes;
+
+    private long currentBytes;
+
+    public JudgeResultCache(@Value("${compiler.cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Computes the cache key for an execution.
+     *
+     * @param mode "run" or "submit", plus any option that changes the result
+     * @param language the submission language
+     * @param code the user's code
+     * @param harnessCode the problem's harness for the language
+     * @param testCaseSetHash the content hash of the test-case set
+     * @return the hex-encoded key
+     */
+    public String key(String mode, String language, String code, String harnessCode, String testCaseSetHash) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] { mode, language, code, harnessCode, testCaseSetHash }) {
+                byte[] bytes = part == null ? new byte[0] : part.getBytes(StandardCharsets.UTF_8);
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+                digest.update((byte) ':');
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Retrieves a cached result.
+     *
+     * @param key the cache key
+     * @return the raw JSON result, or null on a miss
+     */
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.result;
+    }
+
+    /**
+     * Stores a result, evicting the least recently used entries if needed.
+     *
+     * @param key the cache key
+     * @param slug the problem the result belongs to
+     * @param result the raw JSON result
+     */
+    public synchronized void put(String key, String slug, String result) {
+        Entry entry = new Entry(slug, result, weigh(key, result));
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            currentBytes -= previous.bytes;
+        }
+        currentBytes += entry.bytes;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= eldest.next().bytes;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops every cached result of a problem.
+     *
+     * @param slug the slug of the problem
+     */
+    public synchronized void invalidate(String slug) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        int removed = 0;
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.slug.equals(slug)) {
+                currentBytes -= entry.bytes;
+                iterator.remove();
+                removed++;
+            }
+        }
+        logger.info("Invalidated " + removed + " cached results for " + slug);
+    }
+
+    private static long weigh(String key, String result) {
+        // Strings are stored as UTF-16 at worst; add a fixed overhead for the entry itself.
+        return 2L * (key.length() + result.length()) + 64;
+    }
+
+    private static final class Entry {
+        final String slug;
+        final String result;
+        final long bytes;
+
+        Entry(String slug, String result, long bytes) {
+            this.slug = slug;
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+}
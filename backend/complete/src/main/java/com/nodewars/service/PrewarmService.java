@@ -0,0 +1,200 @@
+package com.nodewars.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.nodewars.objects.RoomClosedEvent;
+import com.nodewars.objects.RoomCreatedEvent;
+import com.nodewars.objects.RoomFullEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class for warming the executors ahead of a match's first Run.
+ * A room being created warms the language the match editor opens in; the room
+ * filling up warms both players' preferred languages. Each open room asks for
+ * one warm execution per player in their language, and the sum over all open
+ * rooms is the warm capacity requested from CompilerService for that language.
+ * When the rooms using a language close, its capacity drops back to
+ * judge.prewarm.idle-executions and the executors release what they no longer
+ * need. Rooms that never close (abandoned before the match ended) stop
+ * counting after judge.prewarm.room-ttl-ms.
+ *
+ * Room events arrive on socket threads; they are handed to a single prewarm
+ * thread, which owns all of this service's state and does the user lookups.
+ */
+
+@Service
+public class PrewarmService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrewarmService.class);
+
+    @Autowired
+    private CompilerService compilerService;
+
+    @Autowired
+    private UserService userService;
+
+    @Value("${judge.prewarm.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge.prewarm.default-language:python3}")
+    private String defaultLanguage;
+
+    @Value("${judge.prewarm.idle-executions:0}")
+    private int idleExecutions;
+
+    @Value("${judge.prewarm.room-ttl-ms:1200000}")
+    private long roomTtlMs;
+
+    @Value("${judge.prewarm.sweep-ms:30000}")
+    private long sweepMs;
+
+    private final ScheduledExecutorService prewarmThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "prewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched on the prewarm thread.
+    private final Map<String, Room> rooms = new HashMap<>();
+
+    private final Map<String, Integer> capacities = new HashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // Languages routed to an executor were warmed at startup; with no rooms open they idle down.
+        for (String language : compilerService.getRoutedLanguages()) {
+            submit(() -> compilerService.setWarmCapacity(language, idleExecutions));
+        }
+        prewarmThread.scheduleWithFixedDelay(this::expireRooms, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener
+    public void onRoomCreated(RoomCreatedEvent event) {
+        submit(() -> {
+            rooms.put(event.getRoomId(), new Room(List.of(defaultLanguage)));
+            resize();
+        });
+    }
+
+    @EventListener
+    public void onRoomFull(RoomFullEvent event) {
+        submit(() -> {
+            List<String> languages = new ArrayList<>();
+            for (String username : event.getUsernames()) {
+                languages.add(preferredLanguage(username));
+            }
+            // The match editor opens in the default language, so the first Run may still use it.
+            if (!languages.contains(defaultLanguage)) {
+                languages.add(defaultLanguage);
+            }
+            logger.info("Prewarming " + languages + " for room " + event.getRoomId());
+            rooms.put(event.getRoomId(), new Room(languages));
+            resize();
+        });
+    }
+
+    @EventListener
+    public void onRoomClosed(RoomClosedEvent event) {
+        submit(() -> {
+            if (rooms.remove(event.getRoomId()) != null) {
+                resize();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prewarmThread.shutdownNow();
+    }
+
+    private void submit(Runnable task) {
+        if (!enabled) {
+            return;
+        }
+        prewarmThread.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.warn("Prewarm update failed", e);
+            }
+        });
+    }
+
+    private void expireRooms() {
+        long cutoff = System.currentTimeMillis() - roomTtlMs;
+        if (rooms.values().removeIf(room -> room.openedAt < cutoff)) {
+            resize();
+        }
+    }
+
+    private String preferredLanguage(String username) {
+        try {
+            String language = userService.getPreferredLanguageByPreferredUsername(username);
+            return language == null || language.isBlank() ? defaultLanguage : language;
+        } catch (RuntimeException e) {
+            logger.warn("Could not look up the preferred language of " + username + ": " + e.getMessage());
+            return defaultLanguage;
+        }
+    }
+
+    /**
+     * Requests the capacity the open rooms need, and idle capacity for the
+     * languages they no longer use.
+     */
+    private void resize() {
+        Map<String, Integer> demand = new HashMap<>();
+        for (Room room : rooms.values()) {
+            room.languages.forEach(language -> demand.merge(language, 1, Integer::sum));
+        }
+
+        Set<String> languages = new HashSet<>(capacities.keySet());
+        languages.addAll(demand.keySet());
+        for (String language : languages) {
+            int executions = Math.max(idleExecutions, demand.getOrDefault(language, 0));
+            if (capacities.getOrDefault(language, -1) == executions) {
+                continue;
+            }
+            try {
+                compilerService.setWarmCapacity(language, executions);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Not prewarming " + language + ": " + e.getMessage());
+                continue;
+            }
+            if (demand.containsKey(language)) {
+                capacities.put(language, executions);
+            } else {
+                capacities.remove(language);
+            }
+            logger.info("Warm capacity for " + language + " set to " + executions + " (" + rooms.size() + " open rooms)");
+        }
+    }
+
+    private static final class Room {
+        private final List<String> languages;
+        private final long openedAt = System.currentTimeMillis();
+
+        Room(List<String> languages) {
+            this.languages = languages;
+        }
+    }
+}
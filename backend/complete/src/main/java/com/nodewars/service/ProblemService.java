@@ -2,20 +2,40 @@ package com.nodewars.service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.nodewars.executor.OutputChecker;
+import com.nodewars.executor.OutputCheckers;
 import com.nodewars.model.Problem;
+import com.nodewars.objects.ExpiringMemo;
+import com.nodewars.objects.TestCaseSet;
+import com.nodewars.objects.TestCasesUpdatedEvent;
 import com.nodewars.repository.ProblemRepository;
 
+import jakarta.annotation.PostConstruct;
+
 /**
  * Service class for managing problem-related operations.
  * This class provides methods for problem retrieval and updates.
+ *
+ * Test-case sets, harness codes and checkers are kept in memory for
+ * problem.cache.ttl-ms after they are loaded, so changes made to the database
+ * directly show up within that time. Changes made through updateTestCases
+ * take effect as soon as they commit.
  */
 
 @Service
@@ -29,6 +49,37 @@ public class ProblemService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private JudgeResultCache resultCache;
+
+    @Autowired
+    private CompilerService compilerService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired(required = false)
+    private List<OutputChecker> customCheckers = List.of();
+
+    @Value("${problem.cache.ttl-ms:600000}")
+    private long cacheTtlMs;
+
+    private ExpiringMemo<String, TestCaseSet> testCaseSets;
+
+    private ExpiringMemo<String, TestCaseSet> shownTestCaseSets;
+
+    private ExpiringMemo<String, Map<String, String>> harnessCodes;
+
+    private ExpiringMemo<String, Optional<OutputChecker>> checkers;
+
+    @PostConstruct
+    public void init() {
+        testCaseSets = new ExpiringMemo<>(cacheTtlMs);
+        shownTestCaseSets = new ExpiringMemo<>(cacheTtlMs);
+        harnessCodes = new ExpiringMemo<>(cacheTtlMs);
+        checkers = new ExpiringMemo<>(cacheTtlMs);
+    }
+
     /**
      * Fetch all problems.
      * 
@@ -78,6 +129,28 @@ public class ProblemService {
         return problemRepository.getFirstThreeTestCases(slug);
     }
 
+    /**
+     * Retrieves all test cases of a problem as a hashed set, kept in memory
+     * once loaded.
+     * 
+     * @param slug the slug of the problem
+     * @return the test-case set, or null if the problem does not exist
+     */
+    public TestCaseSet getTestCaseSet(String slug) {
+        return testCaseSets.get(slug, key -> toTestCaseSet(problemRepository.getTestCases(key)));
+    }
+
+    /**
+     * Retrieves the first three test cases of a problem as a hashed set, kept
+     * in memory once loaded.
+     * 
+     * @param slug the slug of the problem
+     * @return the test-case set, or null if the problem does not exist
+     */
+    public TestCaseSet getShownTestCaseSet(String slug) {
+        return shownTestCaseSets.get(slug, key -> toTestCaseSet(problemRepository.getFirstThreeTestCases(key)));
+    }
+
      /**
      * Retrieves total submissions
      * 
@@ -117,9 +190,71 @@ public class ProblemService {
         }
     }
 
+    /**
+     * Retrieves the harness code of a problem for one language. The parsed
+     * harness codes are kept in memory after the first lookup.
+     * 
+     * @param slug the slug of the problem
+     * @param language the submission language
+     * @return the harness code
+     */
     public String getHarnessCode(String slug, String language) {
-        Map<String, String> harnessCodes = getHarnessCodes(slug);
-        return harnessCodes.get(language);
+        return harnessCodes.get(slug, this::getHarnessCodes).get(language);
+    }
+
+    /**
+     * Retrieves the checker that judges a problem's output, resolved from its
+     * checker column: a built-in checker (see OutputCheckers) or the name of a
+     * custom OutputChecker bean. The checker is kept in memory after the first lookup.
+     * 
+     * @param slug the slug of the problem
+     * @return the checker, or null if the problem's harness judges its own output
+     * @throws IllegalArgumentException if the problem names an unknown checker
+     */
+    public OutputChecker getChecker(String slug) {
+        return checkers.get(slug, key -> {
+            Map<String, OutputChecker> custom = customCheckers.stream()
+                .collect(Collectors.toMap(OutputChecker::getName, Function.identity()));
+            return Optional.ofNullable(OutputCheckers.forSpec(problemRepository.getChecker(key), custom));
+        }).orElse(null);
+    }
+
+    /**
+     * Replaces the test cases of a problem. Once the update commits, the
+     * problem's cached data and judge results are dropped, the new test-case
+     * sets are seeded to the executors and the problem's past submissions are
+     * re-judged against them.
+     * 
+     * @param slug the slug of the problem
+     * @param testCases the new test cases as a JSON array
+     * @throws Exception if the problem is not found
+     */
+    @Transactional
+    public void updateTestCases(String slug, String testCases) throws Exception {
+        Problem problem = problemRepository.findBySlug(slug);
+        if (problem == null) {
+            throw new Exception("Problem not found with slug: " + slug);
+        }
+
+        problemRepository.updateTestCases(slug, testCases);
+        eventPublisher.publishEvent(new TestCasesUpdatedEvent(slug));
+    }
+
+    /**
+     * Drops what is kept for a problem once its new test cases are committed,
+     * so nothing read before the commit outlives it, and seeds the new sets.
+     * Runs ahead of the re-judge that the same event starts.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTestCasesUpdated(TestCasesUpdatedEvent event) {
+        String slug = event.getSlug();
+        testCaseSets.remove(slug);
+        shownTestCaseSets.remove(slug);
+        harnessCodes.remove(slug);
+        checkers.remove(slug);
+        resultCache.invalidate(slug);
+        compilerService.seedTestCases(getTestCaseSet(slug), getShownTestCaseSet(slug));
     }
 
     /**
@@ -172,4 +307,23 @@ public class ProblemService {
 
         problemRepository.updateAcceptedSubmissions(slug, newAcceptedSubmissions);
     }
+
+    /**
+     * Counts a judged submission towards a problem's total, and its accepted
+     * count if it passed, and updates the acceptance rate, in one statement so
+     * concurrent submissions and re-judges do not overwrite each other's counts.
+     * 
+     * @param slug the slug of the problem
+     * @param accepted whether the submission passed
+     * @throws Exception if the problem is not found
+     */
+    public void recordSubmission(String slug, boolean accepted) throws Exception {
+        if (problemRepository.recordSubmission(slug, accepted ? 1 : 0) == 0) {
+            throw new Exception("Problem not found with slug: " + slug);
+        }
+    }
+
+    private TestCaseSet toTestCaseSet(String json) {
+        return json == null ? null : new TestCaseSet(json);
+    }
 }
@@ -0,0 +1,297 @@
+package com.nodewars.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nodewars.executor.ExecutionListener;
+import com.nodewars.model.RejudgeCheckpoint;
+import com.nodewars.model.Submission;
+import com.nodewars.objects.ExecutionTag;
+import com.nodewars.objects.TestCaseSet;
+import com.nodewars.objects.TestCasesUpdatedEvent;
+import com.nodewars.repository.ProblemRepository;
+import com.nodewars.repository.RejudgeCheckpointRepository;
+import com.nodewars.repository.SubmissionRepository;
+import com.nodewars.utils.JudgeJson;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Service class for re-judging a problem's submissions after its test cases change.
+ * Submissions judged against an older test-case set are paged through in ID
+ * order and run through CompilerService, at most rejudge.parallelism at a time.
+ * Each page's new verdicts, the change to the problem's accepted count and
+ * acceptance rate, and the job's checkpoint are committed in one transaction,
+ * so a re-judge interrupted by a restart resumes after its last committed page.
+ * Submissions the executors fail to judge, and accepted submissions whose run
+ * does not succeed, are retried up to rejudge.retries times; if any still
+ * fail, the checkpoint stops short of the first of them and the job is marked
+ * failed. Failed jobs are resumed from there on the next start, like
+ * interrupted ones.
+ */
+
+@Service
+public class RejudgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RejudgeService.class);
+
+    @Autowired
+    private SubmissionRepository submissionRepository;
+
+    @Autowired
+    private RejudgeCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private ProblemRepository problemRepository;
+
+    @Autowired
+    private ProblemService problemService;
+
+    @Autowired
+    private CompilerService compilerService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${rejudge.parallelism:4}")
+    private int parallelism;
+
+    @Value("${rejudge.batch-size:100}")
+    private int batchSize;
+
+    @Value("${rejudge.timeout-ms:60000}")
+    private long timeoutMs;
+
+    @Value("${rejudge.retries:2}")
+    private int retries;
+
+    // Re-judges run one problem at a time; each fans out to the executors itself.
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rejudge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTestCasesUpdated(TestCasesUpdatedEvent event) {
+        start(event.getSlug());
+    }
+
+    /**
+     * Resumes the re-judges that were still running when the server stopped,
+     * and retries those that failed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        List<RejudgeCheckpoint> checkpoints = new ArrayList<>(checkpointRepository.findByStatus(RejudgeCheckpoint.RUNNING));
+        checkpoints.addAll(checkpointRepository.findByStatus(RejudgeCheckpoint.FAILED));
+        for (RejudgeCheckpoint checkpoint : checkpoints) {
+            logger.info("Resuming re-judge of " + checkpoint.getSlug() + " after submission " + checkpoint.getLastSubmissionId());
+            start(checkpoint.getSlug());
+        }
+    }
+
+    /**
+     * Queues a re-judge of a problem against its current test cases. A
+     * re-judge already queued for the problem is not repeated.
+     *
+     * @param slug the slug of the problem
+     */
+    public void start(String slug) {
+        if (!pending.add(slug)) {
+            return;
+        }
+        runner.execute(() -> {
+            pending.remove(slug);
+            try {
+                rejudge(slug);
+            } catch (Exception e) {
+                logger.error("Re-judge of " + slug + " failed", e);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the progress of a problem's latest re-judge.
+     *
+     * @param slug the slug of the problem
+     * @return the checkpoint, or null if the problem was never re-judged
+     */
+    public RejudgeCheckpoint getCheckpoint(String slug) {
+        return checkpointRepository.findById(slug).orElse(null);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    private void rejudge(String slug) throws InterruptedException {
+        TestCaseSet testCases = problemService.getTestCaseSet(slug);
+        if (testCases == null) {
+            return;
+        }
+        String hash = testCases.getHash();
+
+        RejudgeCheckpoint checkpoint = checkpointRepository.findById(slug)
+            .filter(existing -> existing.getTestCasesHash().equals(hash))
+            .orElseGet(() -> checkpointRepository.save(new RejudgeCheckpoint(slug, hash)));
+        if (!checkpoint.getStatus().equals(RejudgeCheckpoint.RUNNING)) {
+            checkpoint.setStatus(RejudgeCheckpoint.RUNNING);
+            checkpoint = checkpointRepository.save(checkpoint);
+        }
+        logger.info("Re-judging " + slug + " after submission " + checkpoint.getLastSubmissionId());
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        while (true) {
+            // A newer update has its own re-judge queued behind this one.
+            TestCaseSet current = problemService.getTestCaseSet(slug);
+            if (current == null || !current.getHash().equals(hash)) {
+                logger.info("Re-judge of " + slug + " superseded by newer test cases");
+                return;
+            }
+
+            List<Submission> batch = submissionRepository.findToRejudge(slug, checkpoint.getLastSubmissionId(), hash, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            Map<Long, Boolean> verdicts = judge(slug, batch, testCases);
+            for (int attempt = 1; attempt <= retries && verdicts.size() < batch.size(); attempt++) {
+                List<Submission> failed = batch.stream().filter(submission -> !verdicts.containsKey(submission.getId())).toList();
+                logger.info("Retrying " + failed.size() + " submissions of " + slug + " (attempt " + attempt + ")");
+                verdicts.putAll(judge(slug, failed, testCases));
+            }
+            RejudgeCheckpoint progress = checkpoint;
+            checkpoint = transaction.execute(status -> commit(slug, hash, batch, verdicts, progress));
+
+            if (verdicts.size() < batch.size()) {
+                checkpoint.setStatus(RejudgeCheckpoint.FAILED);
+                checkpointRepository.save(checkpoint);
+                logger.warn("Re-judge of " + slug + " stopped: " + (batch.size() - verdicts.size())
+                    + " submissions could not be judged, first after submission " + checkpoint.getLastSubmissionId());
+                return;
+            }
+        }
+
+        checkpoint.setStatus(RejudgeCheckpoint.DONE);
+        checkpoint = checkpointRepository.save(checkpoint);
+        logger.info("Re-judge of " + slug + " finished: " + checkpoint.getJudged() + " judged, "
+            + checkpoint.getChanged() + " changed, accepted " + (checkpoint.getAcceptedDelta() >= 0 ? "+" : "") + checkpoint.getAcceptedDelta());
+    }
+
+    /**
+     * Runs a page of submissions, keeping at most rejudge.parallelism in flight.
+     * Submissions the executors fail to judge are left out of the verdicts, and
+     * so are accepted submissions whose run did not succeed: an executor outage
+     * looks the same as a compile error or timeout from here, and must not
+     * reject them. A rejected submission that does not run stays rejected.
+     */
+    private Map<Long, Boolean> judge(String slug, List<Submission> batch, TestCaseSet testCases) throws InterruptedException {
+        Semaphore permits = new Semaphore(parallelism);
+        Map<Long, Boolean> verdicts = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> executions = new ArrayList<>();
+
+        for (Submission submission : batch) {
+            permits.acquire();
+            CompletableFuture<String> execution;
+            try {
+                String harnessCode = problemService.getHarnessCode(slug, submission.getLanguage());
+                execution = compilerService.compileAndRunShardedAsync(submission.getLanguage(), submission.getCode(), harnessCode,
+                    problemService.getChecker(slug), testCases, true, Duration.ofMillis(timeoutMs), ExecutionListener.NONE, ExecutionTag.NONE);
+            } catch (RuntimeException e) {
+                execution = CompletableFuture.failedFuture(e);
+            }
+
+            executions.add(execution.handle((result, error) -> {
+                permits.release();
+                if (error != null) {
+                    logger.warn("Could not re-judge submission " + submission.getId() + ": " + error.getMessage());
+                    return null;
+                }
+                try {
+                    Map<String, Object> judged = JudgeJson.readResult(result, false);
+                    if (Boolean.TRUE.equals(judged.get("success"))) {
+                        verdicts.put(submission.getId(), Boolean.TRUE.equals(judged.get("all_passed")));
+                    } else if (!submission.isAccepted()) {
+                        verdicts.put(submission.getId(), false);
+                    } else {
+                        logger.warn("Could not re-judge submission " + submission.getId() + ": " + judged.get("error"));
+                    }
+                } catch (IOException e) {
+                    logger.warn("Could not read re-judge result for submission " + submission.getId(), e);
+                }
+                return null;
+            }));
+        }
+
+        CompletableFuture.allOf(executions.toArray(new CompletableFuture<?>[0])).join();
+        return verdicts;
+    }
+
+    /**
+     * Commits a page's verdicts. The checkpoint advances only up to the first
+     * submission without a verdict; those after it that were judged carry the
+     * new test-case hash and are not paged through again.
+     */
+    private RejudgeCheckpoint commit(String slug, String hash, List<Submission> batch, Map<Long, Boolean> verdicts, RejudgeCheckpoint checkpoint) {
+        List<Long> accepted = new ArrayList<>();
+        List<Long> rejected = new ArrayList<>();
+        int changed = 0;
+        int acceptedDelta = 0;
+        long lastId = checkpoint.getLastSubmissionId();
+        boolean unjudged = false;
+
+        for (Submission submission : batch) {
+            Boolean verdict = verdicts.get(submission.getId());
+            if (verdict == null) {
+                unjudged = true;
+                continue;
+            }
+            if (!unjudged) {
+                lastId = submission.getId();
+            }
+            (verdict ? accepted : rejected).add(submission.getId());
+            if (verdict != submission.isAccepted()) {
+                changed++;
+                acceptedDelta += verdict ? 1 : -1;
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            submissionRepository.updateVerdicts(accepted, true, hash);
+        }
+        if (!rejected.isEmpty()) {
+            submissionRepository.updateVerdicts(rejected, false, hash);
+        }
+        if (acceptedDelta != 0) {
+            problemRepository.adjustAcceptedSubmissions(slug, acceptedDelta);
+        }
+
+        checkpoint.advance(lastId, verdicts.size(), changed, acceptedDelta);
+        return checkpointRepository.save(checkpoint);
+    }
+}
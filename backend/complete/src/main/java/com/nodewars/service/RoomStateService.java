@@ -0,0 +1,141 @@
+package com.nodewars.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.SocketIOServer;
+import com.nodewars.objects.RoomClosedEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class for the live match state players see of each other: how many
+ * lines of code each has written and how many test cases their submission has
+ * passed so far.
+ *
+ * Updates are not forwarded as they arrive. Each room keeps only the latest
+ * value of every field per player, and every match.state.flush-ms the rooms
+ * with changes get one "room_state_delta" per client:
+ *
+ *   { "&lt;username&gt;": { "lineCount": 12, "accepted": 3, "total": 10 }, ... }
+ *
+ * holding only the fields that changed. A player's line count goes to their
+ * opponents only; test-case counts go to everyone in the room, the submitter
+ * included. A client's username is the one recorded on its socket when it
+ * joined the room.
+ */
+
+@Service
+public class RoomStateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomStateService.class);
+
+    @Lazy
+    @Autowired
+    private SocketIOServer socketIOServer;
+
+    @Value("${match.state.flush-ms:250}")
+    private long flushMs;
+
+    private final Map<String, Map<String, Map<String, Object>>> pending = new ConcurrentHashMap<>();
+
+    private final Set<String> changedRooms = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService flushThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "room-state");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        flushThread.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushThread.shutdownNow();
+    }
+
+    /**
+     * Records a player's current line count, for their opponents.
+     */
+    public void updateLineCount(String roomId, String username, Object lineCount) {
+        update(roomId, username, Map.of("lineCount", lineCount));
+    }
+
+    /**
+     * Records how many test cases a player's submission has passed so far.
+     */
+    public void updateTestCases(String roomId, String username, int accepted, int total) {
+        update(roomId, username, Map.of("accepted", accepted, "total", total));
+    }
+
+    @EventListener
+    public void onRoomClosed(RoomClosedEvent event) {
+        pending.remove(event.getRoomId());
+        changedRooms.remove(event.getRoomId());
+    }
+
+    private void update(String roomId, String username, Map<String, Object> fields) {
+        // A room's changes are only touched under its map entry's lock, and taken whole by flush().
+        pending.compute(roomId, (id, players) -> {
+            if (players == null) {
+                players = new HashMap<>();
+            }
+            players.computeIfAbsent(username, name -> new HashMap<>()).putAll(fields);
+            return players;
+        });
+        changedRooms.add(roomId);
+    }
+
+    private void flush() {
+        for (String roomId : changedRooms) {
+            changedRooms.remove(roomId);
+            Map<String, Map<String, Object>> changes = pending.remove(roomId);
+            if (changes == null) {
+                continue;
+            }
+            try {
+                send(roomId, changes);
+            } catch (RuntimeException e) {
+                logger.warn("Room state for " + roomId + " could not be sent", e);
+            }
+        }
+    }
+
+    private void send(String roomId, Map<String, Map<String, Object>> changes) {
+        for (SocketIOClient client : socketIOServer.getRoomOperations(roomId).getClients()) {
+            String recipient = client.get("username");
+            Map<String, Map<String, Object>> delta = new LinkedHashMap<>();
+            changes.forEach((username, fields) -> {
+                if (!username.equals(recipient)) {
+                    delta.put(username, fields);
+                } else if (fields.containsKey("accepted")) {
+                    Map<String, Object> own = new HashMap<>(fields);
+                    own.remove("lineCount");
+                    delta.put(username, own);
+                }
+            });
+            if (!delta.isEmpty()) {
+                client.sendEvent("room_state_delta", delta);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.nodewars.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.nodewars.executor.ExecutionListener;
+import com.nodewars.executor.OutputChecker;
+import com.nodewars.model.Submission;
+import com.nodewars.objects.ExecutionTag;
+import com.nodewars.objects.JudgeProgress;
+import com.nodewars.objects.TestCaseSet;
+import com.nodewars.repository.SubmissionRepository;
+import com.nodewars.utils.JudgeJson;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service class for judging runs and submissions.
+ * This class fetches a problem's harness and test cases, executes the code
+ * through CompilerService and keeps the problem's submission counters up to date.
+ *
+ * Judgements complete on the executors' threads (for Lambda, the HTTP
+ * client's), so recording a submission and updating the counters is handed to
+ * a pool of judge.persist.threads instead of blocking them on the database.
+ * Once judge.persist.queue-capacity submissions are waiting, the completing
+ * thread records its own, which slows judging down rather than losing it.
+ */
+
+@Service
+public class SubmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionService.class);
+
+    @Autowired
+    private CompilerService compilerService;
+
+    @Autowired
+    private ProblemService problemService;
+
+    @Autowired
+    private JudgeResultCache resultCache;
+
+    @Autowired
+    private SubmissionRepository submissionRepository;
+
+    @Value("${judge.submit.fail-fast:true}")
+    private boolean failFast;
+
+    @Value("${judge.run.timeout-ms:20000}")
+    private long runTimeoutMs;
+
+    @Value("${judge.submit.timeout-ms:60000}")
+    private long submitTimeoutMs;
+
+    @Value("${judge.persist.threads:4}")
+    private int persistThreadCount;
+
+    @Value("${judge.persist.queue-capacity:1000}")
+    private int persistQueueCapacity;
+
+    // Records judged submissions. Each task inserts one row and bumps the problem's counters
+    // in a single UPDATE, so the tasks need no ordering between them, even for one problem.
+    private ThreadPoolExecutor persistThreads;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        persistThreads = new ThreadPoolExecutor(persistThreadCount, persistThreadCount, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, persistQueueCapacity)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "submission-persist-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            // Unlike CallerRunsPolicy, this runs the task even after shutdown, so no judgement is left uncompleted.
+            (task, pool) -> task.run());
+        persistThreads.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistThreads.shutdown();
+    }
+
+    /**
+     * Runs code against the first three (shown) test cases of a problem.
+     *
+     * @param language the submission language
+     * @param code the user's code
+     * @param slug the slug of the problem
+     * @param tag the match room and player the run is for
+     * @return a future of the execution result
+     */
+    public CompletableFuture<Map<String, Object>> run(String language, String code, String slug, ExecutionTag tag) {
+        String harnessCode = problemService.getHarnessCode(slug, language);
+        OutputChecker checker = problemService.getChecker(slug);
+        TestCaseSet shownTestCases = problemService.getShownTestCaseSet(slug);
+
+        String cacheKey = resultCache.key(withChecker("run", checker), language, code, harnessCode, shownTestCases.getHash());
+        String cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(parse(cached, true));
+        }
+
+        return compilerService.compileAndRunAsync(language, code, harnessCode, checker, shownTestCases, Duration.ofMillis(runTimeoutMs), ExecutionListener.NONE, tag)
+            .thenApply(result -> {
+                logger.info("Result: " + result);
+                Map<String, Object> resultMap = parse(result, true);
+                cacheIfDeterministic(cacheKey, slug, result, resultMap);
+                return resultMap;
+            });
+    }
+
+    /**
+     * Judges code against all test cases of a problem, records the submission
+     * and updates the problem's submission counters. Large suites are run in
+     * parallel shards, stopping at the first failure when judge.submit.fail-fast is set.
+     *
+     * @param language the submission language
+     * @param code the user's code
+     * @param slug the slug of the problem
+     * @param tag the match room and player the submission is for; the player is recorded with it
+     * @param progress receives the accepted count while judging, or null
+     * @return a future of the execution result, without per-test-case results;
+     *         cancelled, and not recorded, if the match ends first
+     */
+    public CompletableFuture<Map<String, Object>> submit(String language, String code, String slug, ExecutionTag tag, JudgeProgress progress) {
+        CompletableFuture<Map<String, Object>> judged;
+        TestCaseSet testCaseSet;
+        try {
+            String harnessCode = problemService.getHarnessCode(slug, language);
+            OutputChecker checker = problemService.getChecker(slug);
+            testCaseSet = problemService.getTestCaseSet(slug);
+            if (progress != null) {
+                progress.start(testCaseSet.size());
+            }
+
+            String cacheKey = resultCache.key(withChecker(failFast ? "submit:fail-fast" : "submit", checker), language, code, harnessCode, testCaseSet.getHash());
+            String cached = resultCache.get(cacheKey);
+
+            judged = cached != null
+                ? CompletableFuture.completedFuture(parse(cached, false))
+                : compilerService.compileAndRunShardedAsync(language, code, harnessCode, checker, testCaseSet, failFast, Duration.ofMillis(submitTimeoutMs), progress == null ? ExecutionListener.NONE : progress, tag)
+                    .thenApply(result -> {
+                        Map<String, Object> resultMap = parse(result, false);
+                        cacheIfDeterministic(cacheKey, slug, result, resultMap);
+                        return resultMap;
+                    });
+        } catch (RuntimeException e) {
+            judged = CompletableFuture.failedFuture(e);
+            testCaseSet = null;
+        }
+
+        String testCasesHash = testCaseSet == null ? null : testCaseSet.getHash();
+        return judged.thenApplyAsync(resultMap -> {
+            if (progress != null && resultMap.get("test_cases_passed") instanceof Number && resultMap.get("total_test_cases") instanceof Number) {
+                progress.finish(((Number) resultMap.get("test_cases_passed")).intValue(), ((Number) resultMap.get("total_test_cases")).intValue());
+            }
+
+            // Measured CPU time covers the user's program only; without it, fall back
+            // to the harness-reported figure on its historical scale.
+            Object runtimeObj = resultMap.get("runtime_ms");
+            if (resultMap.get("cpu_time_ms") instanceof Number) {
+                resultMap.put("runtime_ms", resultMap.get("cpu_time_ms"));
+            } else if (runtimeObj instanceof Number) {
+                resultMap.put("runtime_ms", ((Number) runtimeObj).doubleValue() * 100);
+            }
+
+            logger.info(resultMap.toString());
+
+            boolean allPassed = (Boolean) resultMap.getOrDefault("all_passed", false);
+
+            try {
+                submissionRepository.save(new Submission(slug, tag.getUsername(), language, code, allPassed, testCasesHash));
+            } catch (Exception e) {
+                logger.error("Error recording submission for " + slug, e);
+            }
+
+            return resultMap;
+        }, persistThreads).whenCompleteAsync((resultMap, error) -> {
+            if (error instanceof CancellationException || error != null && error.getCause() instanceof CancellationException) {
+                return;
+            }
+            try {
+                problemService.recordSubmission(slug, resultMap != null && Boolean.TRUE.equals(resultMap.get("all_passed")));
+            } catch (Exception updateException) {
+                logger.error("Error updating total submissions or acceptance rate", updateException);
+            }
+        }, persistThreads);
+    }
+
+    /**
+     * Caches a result unless the executor reported a failure (time limit,
+     * crash), which may not reproduce on the next attempt.
+     */
+    private void cacheIfDeterministic(String cacheKey, String slug, String result, Map<String, Object> resultMap) {
+        if (!Boolean.FALSE.equals(resultMap.get("success"))) {
+            resultCache.put(cacheKey, slug, result);
+        }
+    }
+
+    /**
+     * Adds the problem's checker to a cache mode, since changing the checker changes the verdicts.
+     */
+    private static String withChecker(String mode, OutputChecker checker) {
+        return checker == null ? mode : mode + ":checker=" + checker.getName();
+    }
+
+    private static Map<String, Object> parse(String result, boolean includeResults) {
+        try {
+            return JudgeJson.readResult(result, includeResults);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.nodewars.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nodewars.objects.ExecutionRequest;
+import com.nodewars.objects.TestCaseSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming JSON helpers for the judge pipeline.
+ *
+ * Test cases travel from the database to the executor as the raw JSON text
+ * stored in the problems table; they are never bound to Java objects. Executor
+ * payloads are written with a JsonGenerator and results are read token by
+ * token, so per-test-case results can be skipped when they are not needed.
+ */
+public final class JudgeJson {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private JudgeJson() {
+    }
+
+    /**
+     * Writes the judge function's invocation payload, copying the test cases through verbatim.
+     *
+     * @param request the execution request
+     * @param includeTestCases whether to send the test cases or only their hash
+     * @return the UTF-8 encoded payload
+     * @throws IOException if the payload could not be written
+     */
+    public static byte[] writePayload(ExecutionRequest request, boolean includeTestCases) throws IOException {
+        TestCaseSet testCases = request.getTestCases();
+        ByteArrayOutputStream out = new ByteArrayOutputStream((includeTestCases ? testCases.getBytes().length : 0) + 1024);
+        try (JsonGenerator generator = MAPPER.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("user_code", request.getCode());
+            generator.writeStringField("harness_code", request.getHarnessCode());
+            generator.writeStringField("language", request.getLanguage());
+            generator.writeStringField("test_cases_hash", testCases.getHash());
+            if (includeTestCases) {
+                generator.writeFieldName("test_cases");
+                generator.writeRawValue(testCases.getJson());
+            }
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads an executor result document.
+     *
+     * @param json the raw result
+     * @param includeResults whether to keep the per-test-case "results" array
+     * @return the result fields in document order
+     * @throws IOException if the result is not a JSON object
+     */
+    public static Map<String, Object> readResult(String json, boolean includeResults) throws IOException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        try (JsonParser parser = MAPPER.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Executor result is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (!includeResults && field.equals("results")) {
+                    parser.skipChildren();
+                } else {
+                    result.put(field, parser.readValueAs(Object.class));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Serializes a result document.
+     *
+     * @param result the result fields
+     * @return the JSON text
+     * @throws IOException if the result could not be written
+     */
+    public static String writeResult(Map<String, Object> result) throws IOException {
+        return MAPPER.writeValueAsString(result);
+    }
+
+    /**
+     * Splits a JSON array into the raw text of its elements without binding them.
+     *
+     * @param json the JSON array
+     * @return the text of each element, in order
+     * @throws IOException if the text is not a JSON array
+     */
+    public static List<String> splitArray(String json) throws IOException {
+        List<String> elements = new ArrayList<>();
+        try (JsonParser parser = MAPPER.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Test cases are not a JSON array");
+            }
+            int start = -1;
+            while (true) {
+                JsonToken token = parser.nextToken();
+                if (token == null) {
+                    throw new IOException("Unterminated JSON array");
+                }
+                // An element ends where the next one (or the closing bracket) starts.
+                int offset = (int) parser.currentTokenLocation().getCharOffset();
+                if (start >= 0) {
+                    elements.add(trimSeparator(json, start, offset));
+                }
+                if (token == JsonToken.END_ARRAY) {
+                    break;
+                }
+                start = offset;
+                parser.skipChildren();
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Splits a JSON object into the raw text of its field values without binding them.
+     *
+     * @param json the JSON object
+     * @return the text of each field's value, by field name in document order
+     * @throws IOException if the text is not a JSON object
+     */
+    public static Map<String, String> splitObject(String json) throws IOException {
+        Map<String, String> fields = new LinkedHashMap<>();
+        try (JsonParser parser = MAPPER.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Test case is not a JSON object");
+            }
+            JsonToken token = parser.nextToken();
+            while (token == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                int start = (int) parser.currentTokenLocation().getCharOffset();
+                parser.skipChildren();
+                // A value ends where the next field (or the closing brace) starts.
+                token = parser.nextToken();
+                if (token == null) {
+                    throw new IOException("Unterminated JSON object");
+                }
+                fields.put(field, trimSeparator(json, start, (int) parser.currentTokenLocation().getCharOffset()));
+            }
+        }
+        return fields;
+    }
+
+    private static String trimSeparator(String json, int start, int end) {
+        while (end > start && (json.charAt(end - 1) == ',' || Character.isWhitespace(json.charAt(end - 1)))) {
+            end--;
+        }
+        return json.substring(start, end);
+    }
+}
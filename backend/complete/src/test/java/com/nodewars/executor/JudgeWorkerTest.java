@@ -0,0 +1,137 @@
+package com.nodewars.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nodewars.objects.ExecutionRequest;
+import com.nodewars.objects.TestCaseSet;
+import com.nodewars.utils.JudgeJson;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import javax.tools.ToolProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs Java submissions through the persistent JVM worker, started the way
+ * judge-worker.sh starts it, with the worker compiled from the image sources.
+ */
+class JudgeWorkerTest {
+
+    private static final Path IMAGE = Path.of("../../compilers/alpine/java-compiler");
+
+    private static final String RESULT = "{\\\"success\\\":true,\\\"all_passed\\\":true}";
+
+    // Marks the worker's JVM and leaves a thread running after main returns.
+    private static final String LEFTOVER_THREAD = "System.setProperty(\"leftover\", \"1\");"
+        + " new Thread(() -> { try { Thread.sleep(60000); } catch (InterruptedException e) { } }).start();";
+
+    // Reports success only on a JVM no earlier submission marked.
+    private static final String FRESH_WORKER = "if (System.getProperty(\"leftover\") == null) System.out.print(\"" + RESULT + "\");";
+
+    @TempDir
+    Path dir;
+
+    private LocalProcessCodeExecutor executor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int compiled = ToolProvider.getSystemJavaCompiler()
+            .run(null, null, null, "-d", dir.toString(), IMAGE.resolve("JudgeWorker.java").toString());
+        assertEquals(0, compiled);
+
+        String command = Files.readAllLines(IMAGE.resolve("judge-worker.sh")).stream()
+            .filter(line -> line.startsWith("exec "))
+            .findFirst()
+            .orElseThrow()
+            .substring("exec ".length())
+            .replace("/opt/judge", dir.toString());
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+            "compiler.local.command.java", command
+        )));
+        executor = new LocalProcessCodeExecutor(environment, 1, 60000, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void exitingWithZeroKeepsTheResult() throws Exception {
+        Map<String, Object> result = run("System.out.print(\"" + RESULT + "\"); System.exit(0);");
+
+        assertEquals(true, result.get("all_passed"), String.valueOf(result));
+    }
+
+    @Test
+    void exitingWithAnErrorIsARuntimeError() throws Exception {
+        Map<String, Object> result = run("System.exit(3);");
+
+        String error = (String) result.get("error");
+        assertNotNull(error, String.valueOf(result));
+        assertTrue(error.startsWith("Runtime error (exit code 3)"), error);
+    }
+
+    @Test
+    void exitingDoesNotEndTheWorker() throws Exception {
+        Map<String, Object> exited = run("try { System.exit(0); } catch (Exception e) { System.out.print(\"caught\"); }");
+        assertEquals("Harness produced no result", exited.get("error"));
+
+        Map<String, Object> result = run("System.out.print(\"" + RESULT + "\");");
+
+        assertEquals(true, result.get("all_passed"), String.valueOf(result));
+    }
+
+    @Test
+    void threadsLeftRunningRetireTheWorker() throws Exception {
+        run(LEFTOVER_THREAD);
+
+        Map<String, Object> result = run(FRESH_WORKER);
+
+        assertEquals(true, result.get("all_passed"), String.valueOf(result));
+    }
+
+    @Test
+    void threadsLeftRunningAfterAnExitRetireTheWorker() throws Exception {
+        run(LEFTOVER_THREAD + " System.exit(0);");
+
+        Map<String, Object> result = run(FRESH_WORKER);
+
+        assertEquals(true, result.get("all_passed"), String.valueOf(result));
+    }
+
+    @Test
+    void onlyMarkersWithTheJobsTokenAreForwarded() throws Exception {
+        List<String> progress = new CopyOnWriteArrayList<>();
+        Map<String, Object> result = run("System.err.println(\"@@case 0 1\");"
+            + " System.err.println(\"@@case forged 1 1\");"
+            + " System.err.println(\"@@case \" + System.getProperty(\"judge.progress.token\") + \" 2 1\");"
+            + " System.out.print(\"" + RESULT + "\");",
+            (index, passed) -> progress.add(index + " " + passed));
+
+        assertEquals(true, result.get("all_passed"), String.valueOf(result));
+        assertEquals(List.of("2 true"), progress);
+    }
+
+    private Map<String, Object> run(String body) throws Exception {
+        return run(body, ExecutionListener.NONE);
+    }
+
+    private Map<String, Object> run(String body, ExecutionListener listener) throws Exception {
+        String code = "public class Main { public static void main(String[] args) { " + body + " } }";
+        String result = executor.execute(new ExecutionRequest("java", code, "", new TestCaseSet("[]"), listener));
+        return JudgeJson.readResult(result, false);
+    }
+}
@@ -0,0 +1,119 @@
+package com.nodewars.executor;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nodewars.objects.ExecutionRequest;
+import com.nodewars.objects.TestCaseSet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Killing a worker must stop the program it runs, even when that program is
+ * not one of the worker's child processes (a container started by the docker
+ * client). The workers here run a stand-in for docker: "run" starts a
+ * detached "sandbox" process and records its pid under the container name,
+ * "rm -f" kills it.
+ */
+class LocalProcessCodeExecutorTest {
+
+    private static final String FAKE_DOCKER = String.join("\n",
+        "#!/bin/bash",
+        "dir=$(dirname \"$0\")",
+        "if [ \"$1\" = rm ]; then",
+        "  [ -f \"$dir/$3.pid\" ] && kill -9 \"$(cat \"$dir/$3.pid\")\"",
+        "  exit 0",
+        "fi",
+        "while [ $# -gt 0 ]; do [ \"$1\" = --name ] && name=$2; shift; done",
+        "( setsid sleep 300 < /dev/null > /dev/null 2>&1 & echo $! > \"$dir/$name.pid.tmp\"; mv \"$dir/$name.pid.tmp\" \"$dir/$name.pid\" )",
+        "read -r job",
+        "touch \"$dir/job\"",
+        "sleep 300",
+        ""
+    );
+
+    @TempDir
+    Path dir;
+
+    private LocalProcessCodeExecutor executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path docker = dir.resolve("docker");
+        Files.writeString(docker, FAKE_DOCKER);
+        assertTrue(docker.toFile().setExecutable(true));
+
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+            "compiler.local.command.python3", docker + " run -i --rm algowar/python3-compiler"
+        )));
+        executor = new LocalProcessCodeExecutor(environment, 1, 60000, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void cancellingARunningJobKillsItsSandbox() throws Exception {
+        CompletableFuture<String> execution = executor.executeAsync(request(), null);
+        ProcessHandle sandbox = awaitRunningJob();
+
+        execution.cancel(true);
+
+        assertGone(sandbox);
+    }
+
+    @Test
+    void timingOutARunningJobKillsItsSandbox() throws Exception {
+        executor.executeAsync(request(), Duration.ofMillis(500));
+        ProcessHandle sandbox = awaitRunningJob();
+
+        assertGone(sandbox);
+    }
+
+    private ExecutionRequest request() {
+        return new ExecutionRequest("python3", "print(1)", "", new TestCaseSet("[]"));
+    }
+
+    /**
+     * Waits for the worker to receive the job and returns its sandbox process.
+     */
+    private ProcessHandle awaitRunningJob() throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            if (Files.exists(dir.resolve("job"))) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    Path pidFile = files.filter(file -> file.toString().endsWith(".pid")).findFirst().orElseThrow();
+                    ProcessHandle sandbox = ProcessHandle.of(Long.parseLong(Files.readString(pidFile).trim())).orElseThrow();
+                    assertTrue(sandbox.isAlive());
+                    return sandbox;
+                }
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("The worker never received the job");
+    }
+
+    private void assertGone(ProcessHandle sandbox) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sandbox.isAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(sandbox.isAlive(), "the sandbox outlived its worker");
+    }
+}
@@ -0,0 +1,150 @@
+package com.nodewars.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The built-in checkers, one value at a time. Every comparison also checks that
+ * the checker consumed exactly the value it was given, matched or not, since
+ * the next test case's output follows it on the same stream.
+ */
+class OutputCheckersTest {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final OutputChecker FLOAT = OutputCheckers.forSpec("float:1e-6", Map.of());
+
+    @Test
+    void specsResolveToCheckers() {
+        assertNull(OutputCheckers.forSpec(null, Map.of()));
+        assertNull(OutputCheckers.forSpec("  ", Map.of()));
+        assertSame(OutputCheckers.EXACT, OutputCheckers.forSpec(" exact ", Map.of()));
+        assertSame(OutputCheckers.UNORDERED, OutputCheckers.forSpec("unordered", Map.of()));
+        assertEquals("float:1e-6", FLOAT.getName());
+        assertSame(OutputCheckers.TOKENS, OutputCheckers.forSpec("custom", Map.of("custom", OutputCheckers.TOKENS)));
+        assertThrows(IllegalArgumentException.class, () -> OutputCheckers.forSpec("float:abc", Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> OutputCheckers.forSpec("missing", Map.of()));
+    }
+
+    @Test
+    void exactComparesNumbersByValue() throws IOException {
+        assertNull(check(OutputCheckers.EXACT, "[1, 2.0, {\"a\": \"x\"}]", "[1.0, 2, {\"a\": \"x\"}]"));
+        assertNotNull(check(OutputCheckers.EXACT, "0.1", "0.10000001"));
+        assertNotNull(check(OutputCheckers.EXACT, "\"a b\"", "\"a  b\""));
+        assertNotNull(check(OutputCheckers.EXACT, "1", "\"1\""));
+    }
+
+    @Test
+    void exactReportsWhereValuesDifferAndConsumesBothWhole() throws IOException {
+        String diff = check(OutputCheckers.EXACT, "{\"a\": [1, 2, [3]], \"b\": 4}", "{\"a\": [1, 5, [3]], \"b\": 4}");
+        assertEquals("at /a/1: expected 2 but got 5", diff);
+        assertEquals("expected an array but got 3", check(OutputCheckers.EXACT, "[[1, 2], 3]", "[3, [1, 2]]").replace("at /0: ", ""));
+        assertNotNull(check(OutputCheckers.EXACT, "[1, 2]", "[1, 2, 3]"));
+        assertNotNull(check(OutputCheckers.EXACT, "[1, 2, 3]", "[1, 2]"));
+        assertNotNull(check(OutputCheckers.EXACT, "{\"a\": 1}", "{\"b\": 1}"));
+    }
+
+    @Test
+    void floatToleratesAnAbsoluteDifferenceForSmallValues() throws IOException {
+        assertNull(check(FLOAT, "0.5", "0.5000009"));
+        assertNotNull(check(FLOAT, "0.5", "0.500002"));
+        assertNull(check(FLOAT, "0", "-0.0000005"));
+    }
+
+    @Test
+    void floatFallsBackToARelativeDifferenceForLargeValues() throws IOException {
+        // 1e6 * 1e-6 = 1: a difference of 0.5 is within tolerance, 2 is not.
+        assertNull(check(FLOAT, "1000000", "1000000.5"));
+        assertNotNull(check(FLOAT, "1000000", "1000002"));
+        assertNull(check(FLOAT, "-1000000", "-1000000.5"));
+        assertNull(check(FLOAT, "[1.0, [2.0]]", "[1.0000001, [1.9999999]]"));
+    }
+
+    @Test
+    void floatStillComparesStringsExactly() throws IOException {
+        assertNotNull(check(FLOAT, "\"1.0\"", "\"1.0000001\""));
+    }
+
+    @Test
+    void tokensIgnoreWhitespaceBetweenAndAroundTokens() throws IOException {
+        assertNull(check(OutputCheckers.TOKENS, "\"a b  c\"", "\" a\\tb\\nc \""));
+        assertNotNull(check(OutputCheckers.TOKENS, "\"a b c\"", "\"a bc\""));
+    }
+
+    @Test
+    void tokensTreatEmptyAndBlankStringsAlike() throws IOException {
+        assertNull(check(OutputCheckers.TOKENS, "\"\"", "\"   \""));
+        assertNull(check(OutputCheckers.TOKENS, "\"  \"", "\"\""));
+        assertNotNull(check(OutputCheckers.TOKENS, "\"\"", "\"a\""));
+        assertNotNull(check(OutputCheckers.TOKENS, "\"a\"", "\"\""));
+    }
+
+    @Test
+    void unorderedAcceptsAnyOrder() throws IOException {
+        assertNull(check(OutputCheckers.UNORDERED, "[[1, 2], [3], 4]", "[4, [3], [1, 2]]"));
+        assertNull(check(OutputCheckers.UNORDERED, "[]", "[]"));
+        // Only the top level is unordered.
+        assertNotNull(check(OutputCheckers.UNORDERED, "[[1, 2]]", "[[2, 1]]"));
+    }
+
+    @Test
+    void unorderedCountsDuplicates() throws IOException {
+        assertNull(check(OutputCheckers.UNORDERED, "[1, 1, 2]", "[1, 2, 1]"));
+        assertNotNull(check(OutputCheckers.UNORDERED, "[1, 1, 2]", "[1, 2, 2]"));
+        assertEquals("expected 3 elements but got 2", check(OutputCheckers.UNORDERED, "[1, 1, 2]", "[1, 2]"));
+        assertNotNull(check(OutputCheckers.UNORDERED, "[1, 2]", "[1, 2, 1]"));
+    }
+
+    @Test
+    void unorderedGivesUpOnElementsLongerThanAnyExpected() throws IOException {
+        assertEquals("unexpected element at index 1",
+            check(OutputCheckers.UNORDERED, "[1, 2]", "[1, \"far longer than any expected element\", 2]"));
+        assertEquals("unexpected element at index 0",
+            check(OutputCheckers.UNORDERED, "[[1], [2]]", "[[1, 2, 3, 4, 5, 6], [2]]"));
+        assertEquals("unexpected element at index 0",
+            check(OutputCheckers.UNORDERED, "[{\"a\": 1}]", "[{\"a\": [1, 2, 3, 4, 5]}]"));
+        // The limit is crossed on the opening bracket of a nested array.
+        assertEquals("unexpected element at index 0",
+            check(OutputCheckers.UNORDERED, "[\"a\"]", "[[1, [2]], \"a\"]"));
+    }
+
+    @Test
+    void unorderedComparesNonArraysExactly() throws IOException {
+        assertNull(check(OutputCheckers.UNORDERED, "{\"a\": 1}", "{\"a\": 1}"));
+        assertNotNull(check(OutputCheckers.UNORDERED, "[1]", "1"));
+        assertNotNull(check(OutputCheckers.UNORDERED, "1", "[1]"));
+    }
+
+    /**
+     * Runs a checker on one value and asserts that it left each parser on the
+     * last token of its value.
+     */
+    private static String check(OutputChecker checker, String expected, String actual) throws IOException {
+        try (JsonParser expectedParser = FACTORY.createParser(expected);
+             JsonParser actualParser = FACTORY.createParser(actual + " \"next\"")) {
+            expectedParser.nextToken();
+            actualParser.nextToken();
+
+            String diff = checker.check("{}", expectedParser, actualParser);
+
+            assertNull(expectedParser.nextToken(), "the expected value was not consumed exactly");
+            assertEquals(JsonToken.VALUE_STRING, actualParser.nextToken(), "the output value was not consumed exactly");
+            assertEquals("next", actualParser.getText(), "the output value was not consumed exactly");
+            assertTrue(diff == null || !diff.isEmpty());
+            return diff;
+        }
+    }
+}
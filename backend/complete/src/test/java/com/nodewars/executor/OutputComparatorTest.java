@@ -0,0 +1,202 @@
+package com.nodewars.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.nodewars.objects.TestCaseSet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Streams a program's output against a test-case set. The output is followed
+ * on the stream by the worker's next frame, which every comparison must leave
+ * unread, however early it stops.
+ */
+class OutputComparatorTest {
+
+    private static final String NEXT_FRAME = "RESULT stored 0 0\n";
+
+    private final List<String> verdicts = new CopyOnWriteArrayList<>();
+
+    @Test
+    void matchingOutputPassesEveryCase() throws IOException {
+        Map<String, Object> result = compare(cases(1, 2, 3), "1\n2\n3\n");
+
+        assertEquals(true, result.get("all_passed"));
+        assertEquals(3, result.get("test_cases_passed"));
+        assertEquals(3, result.get("total_test_cases"));
+        assertNull(result.get("error"));
+        assertNull(result.get("first_case_failed"));
+        assertEquals(List.of("0 true", "1 true", "2 true"), verdicts);
+        assertEquals(3, ((List<?>) result.get("results")).size());
+    }
+
+    @Test
+    void smallSuitesAreComparedInFull() throws IOException {
+        Map<String, Object> result = compare(cases(1, 2, 3), "1 5 3");
+
+        assertEquals(false, result.get("all_passed"));
+        assertEquals(2, result.get("test_cases_passed"));
+        assertEquals(List.of("0 true", "1 false", "2 true"), verdicts);
+        Map<?, ?> failed = (Map<?, ?>) result.get("first_case_failed");
+        assertEquals(2, failed.get("case"));
+        assertEquals(5, failed.get("output"));
+        assertEquals(2, failed.get("expected"));
+        assertEquals("expected 2 but got 5", failed.get("diff"));
+        // The input's fields are spread into the failed case, as harnesses report them.
+        assertEquals(2, failed.get("n"));
+    }
+
+    @Test
+    void largeSuitesStopAtTheFirstMismatch() throws IOException {
+        Integer[] expected = IntStream.range(0, 20).boxed().toArray(Integer[]::new);
+        String output = IntStream.range(0, 20).mapToObj(i -> i == 4 ? "-1" : String.valueOf(i)).collect(Collectors.joining(" "));
+
+        Map<String, Object> result = compare(cases(expected), output);
+
+        assertEquals(false, result.get("all_passed"));
+        assertEquals(4, result.get("test_cases_passed"));
+        assertEquals(5, verdicts.size());
+        assertNull(result.get("results"));
+        assertEquals(5, ((Map<?, ?>) result.get("first_case_failed")).get("case"));
+    }
+
+    @Test
+    void tooFewValuesFailAtTheFirstMissingOne() throws IOException {
+        Map<String, Object> result = compare(cases(1, 2, 3), "1");
+
+        assertEquals(false, result.get("all_passed"));
+        assertEquals(1, result.get("test_cases_passed"));
+        assertEquals(List.of("0 true", "1 false"), verdicts);
+        assertEquals("no output", ((Map<?, ?>) result.get("first_case_failed")).get("diff"));
+    }
+
+    @Test
+    void noOutputAtAllFailsTheFirstCase() throws IOException {
+        Map<String, Object> result = compare(cases(1, 2), "");
+
+        assertEquals(false, result.get("all_passed"));
+        assertEquals(0, result.get("test_cases_passed"));
+        assertEquals(List.of("0 false"), verdicts);
+    }
+
+    @Test
+    void tooManyValuesFailEvenWhenEveryCasePasses() throws IOException {
+        Map<String, Object> result = compare(cases(1, 2), "1 2 3");
+
+        assertEquals(false, result.get("all_passed"));
+        assertEquals(2, result.get("test_cases_passed"));
+        assertEquals("Output has more values than there are test cases", result.get("error"));
+    }
+
+    @Test
+    void trailingGarbageCountsAsAnExtraValue() throws IOException {
+        Map<String, Object> result = compare(cases(1, 2), "1 2 }");
+
+        assertEquals(false, result.get("all_passed"));
+        assertEquals("Output has more values than there are test cases", result.get("error"));
+    }
+
+    @Test
+    void invalidJsonStopsTheComparison() throws IOException {
+        Map<String, Object> result = compare(cases(1, 2, 3), "1 [2,, 3");
+
+        assertEquals(false, result.get("all_passed"));
+        assertEquals(1, result.get("test_cases_passed"));
+        assertEquals("Output could not be read past test case 2", result.get("error"));
+        assertTrue(((String) ((Map<?, ?>) result.get("first_case_failed")).get("diff")).startsWith("output is not valid JSON"));
+    }
+
+    @Test
+    void aFailingCheckerFailsItsCase() throws IOException {
+        OutputChecker broken = new OutputChecker() {
+            @Override
+            public String getName() {
+                return "broken";
+            }
+
+            @Override
+            public String check(String input, JsonParser expected, JsonParser actual) {
+                throw new IllegalStateException("broken");
+            }
+        };
+
+        Map<String, Object> result = compare(cases(1, 2), "1 2", broken);
+
+        assertEquals(false, result.get("all_passed"));
+        assertEquals("Checker failed on test case 1", result.get("error"));
+    }
+
+    @Test
+    void longValuesArePreviewedCutShort() throws IOException {
+        String longList = IntStream.range(0, 1000).mapToObj(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+
+        Map<String, Object> result = compare(cases(List.of(1)), longList);
+
+        Object output = ((Map<?, ?>) result.get("first_case_failed")).get("output");
+        assertTrue(output instanceof String && ((String) output).endsWith("..."), String.valueOf(output));
+        assertTrue(((String) output).length() <= OutputComparator.PREVIEW_CHARS + 3);
+    }
+
+    @Test
+    void aListenerThatThrowsDoesNotStopTheComparison() throws IOException {
+        TestCaseSet testCases = cases(1, 2);
+        InputStream stream = stream("1 2");
+
+        Map<String, Object> result = OutputComparator.compare(stream, "1 2".length(), testCases, OutputCheckers.EXACT,
+            (index, passed) -> { throw new IllegalStateException("listener"); });
+
+        assertEquals(true, result.get("all_passed"));
+        assertNextFrame(stream);
+    }
+
+    private Map<String, Object> compare(TestCaseSet testCases, String output) throws IOException {
+        return compare(testCases, output, OutputCheckers.EXACT);
+    }
+
+    /**
+     * Compares the output and checks that exactly its bytes were consumed.
+     */
+    private Map<String, Object> compare(TestCaseSet testCases, String output, OutputChecker checker) throws IOException {
+        InputStream stream = stream(output);
+        Map<String, Object> result = OutputComparator.compare(stream, output.getBytes(StandardCharsets.UTF_8).length, testCases, checker,
+            (index, passed) -> verdicts.add(index + " " + passed));
+        assertNextFrame(stream);
+        return result;
+    }
+
+    private static InputStream stream(String output) {
+        return new ByteArrayInputStream((output + NEXT_FRAME).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertNextFrame(InputStream stream) throws IOException {
+        assertEquals(NEXT_FRAME, new String(stream.readAllBytes(), StandardCharsets.UTF_8), "the output was not consumed exactly");
+    }
+
+    private static TestCaseSet cases(Integer... outputs) {
+        return cases(List.of(outputs));
+    }
+
+    private static TestCaseSet cases(List<?> outputs) {
+        List<String> cases = new ArrayList<>();
+        for (int i = 0; i < outputs.size(); i++) {
+            cases.add("{\"input\": {\"n\": " + (i + 1) + "}, \"output\": " + outputs.get(i) + "}");
+        }
+        assertFalse(cases.isEmpty());
+        return new TestCaseSet("[" + String.join(",", cases) + "]");
+    }
+}
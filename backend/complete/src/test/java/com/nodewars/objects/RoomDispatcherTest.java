@@ -0,0 +1,102 @@
+package com.nodewars.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Room handlers run on the dispatcher's threads, in order per room, and never
+ * on the thread handing them over, even when the dispatcher is saturated.
+ */
+class RoomDispatcherTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private RoomDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void aRoomsHandlersRunInOrderOffTheCallingThread() throws Exception {
+        dispatcher = new RoomDispatcher(2, 1, 10);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        Thread caller = Thread.currentThread();
+
+        for (int i = 0; i < 3; i++) {
+            String name = "handler-" + i;
+            assertTrue(dispatcher.dispatch("room", () -> {
+                assertFalse(Thread.currentThread() == caller);
+                ran.add(name);
+                done.countDown();
+            }));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("handler-0", "handler-1", "handler-2"), ran);
+    }
+
+    @Test
+    void aSaturatedDispatcherRefusesNewRoomsInsteadOfRunningThemOnTheCaller() throws Exception {
+        dispatcher = new RoomDispatcher(1, 1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        assertTrue(dispatcher.dispatch("busy", () -> {
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.dispatch("waiting", () -> { }));
+
+        Thread caller = Thread.currentThread();
+        boolean[] ranOnCaller = new boolean[1];
+        assertFalse(dispatcher.dispatch("refused", () -> ranOnCaller[0] = Thread.currentThread() == caller));
+        assertFalse(ranOnCaller[0]);
+
+        // Rooms already admitted still take more events.
+        assertTrue(dispatcher.dispatch("waiting", () -> { }));
+    }
+
+    @Test
+    void aRoomOverItsBacklogIsRefused() throws Exception {
+        dispatcher = new RoomDispatcher(1, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        assertTrue(dispatcher.dispatch("room", () -> {
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(dispatcher.dispatch("room", () -> { }));
+        assertFalse(dispatcher.dispatch("room", () -> { }));
+    }
+
+    @Test
+    void roomsAreAdmittedAgainOnceDrained() throws Exception {
+        dispatcher = new RoomDispatcher(1, 1, 10);
+        for (int i = 0; i < 20; i++) {
+            CountDownLatch done = new CountDownLatch(1);
+            assertTrue(dispatcher.dispatch("room-" + i, done::countDown));
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,3 @@
+-- Output checker for problems judged by comparing outputs instead of by their
+-- harness (see "Code Execution" in the README). NULL keeps the harness verdict.
+ALTER TABLE problems ADD COLUMN IF NOT EXISTS checker text;
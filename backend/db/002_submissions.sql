@@ -0,0 +1,25 @@
+-- Judged submissions, kept so they can be re-judged when a problem's test
+-- cases change, and the progress of each problem's re-judge.
+CREATE TABLE IF NOT EXISTS submissions (
+    id bigserial PRIMARY KEY,
+    slug text NOT NULL,
+    username text,
+    language text NOT NULL,
+    code text NOT NULL,
+    accepted boolean NOT NULL,
+    test_cases_hash text,
+    submitted_at bigint NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS submissions_slug_id ON submissions (slug, id);
+
+CREATE TABLE IF NOT EXISTS rejudge_checkpoints (
+    slug text PRIMARY KEY,
+    test_cases_hash text,
+    status text NOT NULL,
+    last_submission_id bigint NOT NULL DEFAULT 0,
+    judged integer NOT NULL DEFAULT 0,
+    changed integer NOT NULL DEFAULT 0,
+    accepted_delta integer NOT NULL DEFAULT 0,
+    updated_at bigint NOT NULL
+);
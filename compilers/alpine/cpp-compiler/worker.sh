@@ -0,0 +1,223 @@
+#!/bin/bash
+
+# Long-lived judge worker. Same compile/run steps as entrypoint.sh, but the
+# process stays up and serves one job after another over stdin/stdout:
+#
+#   request:  JOB <language> <code_bytes> <harness_bytes> <test_cases_bytes> <test_cases_hash>\n<code><harness><test_cases>
+#   response: RESULT <status> <exit_code> <body_bytes>\n<body>
+#
+# The user code and harness are concatenated into a single source file, and the
+# test cases are fed to the program on stdin. status is one of ok,
+# compile_error, runtime_error or timeout; the body is the program's stdout
+# for ok and the compiler/program stderr otherwise.
+#
+# Test-case sets are cached by their SHA-256 under $CASE_ROOT. A job may send
+# zero test-case bytes to reuse a cached set; if the set is not cached the
+# worker answers "RESULT missing_test_cases 0 0" and the job is resent with the
+# body. Sets can also be seeded ahead of time:
+#
+#   request:  PUT <test_cases_hash> <test_cases_bytes>\n<test_cases>
+#   response: RESULT stored 0 0
+#
+# Each job gets a fresh random token, passed to the program as
+# $JUDGE_PROGRESS_TOKEN. While the job runs, stderr lines of the form
+# "@@case <token> <index> <1|0>" carrying that token are taken out of the
+# program's stderr and forwarded immediately as
+#
+#   progress: PROGRESS <index> <1|0>
+#
+# Lines with any other token are left in stderr, so output the program prints
+# without knowing the token cannot pass for the harness's verdicts.
+#
+# Every job that gets as far as running the program reports what the run cost
+# just before its RESULT:
+#
+#   usage:    USAGE <cpu_us> <wall_us> <peak_memory_kb>
+#
+# CPU time and peak memory come from cgroup v2 accounting and cover only the
+# program (not the compile step or this worker); they are "-" when the worker
+# cannot create cgroups under $CGROUP_ROOT.
+#
+# The harness's #include <...> lines are compiled once into a precompiled
+# header under $PCH_ROOT, keyed by the compiler version and the header text,
+# and force-included ahead of each job's source, so the standard headers a
+# problem uses are parsed once rather than on every submission. Jobs whose
+# precompiled header cannot be built are compiled without one.
+
+RUN_TIMEOUT=${RUN_TIMEOUT:-10}
+CGROUP_ROOT=${CGROUP_ROOT:-/sys/fs/cgroup}
+JOB_ROOT=/tmp/jobs
+CASE_ROOT=/tmp/testcases
+CASE_CACHE_SIZE=${CASE_CACHE_SIZE:-64}
+PCH_ROOT=/tmp/pch
+PCH_CACHE_SIZE=${PCH_CACHE_SIZE:-8}
+PCH_COMPILER=$(g++ --version | head -n 1 | sha256sum | cut -c1-16)
+
+mkdir -p "$JOB_ROOT" "$CASE_ROOT" "$PCH_ROOT"
+
+# With a writable cgroup, the worker moves itself into a "worker" leaf so each
+# run can get a sibling leaf of its own (cgroup v2 only allows processes in
+# leaves once controllers are enabled for the children).
+ACCOUNTING=
+CGROUP=$CGROUP_ROOT$(sed -n 's/^0:://p' /proc/self/cgroup 2> /dev/null)
+if [ -w "$CGROUP/cgroup.subtree_control" ] && mkdir -p "$CGROUP/worker" 2> /dev/null \
+    && echo $$ 2> /dev/null > "$CGROUP/worker/cgroup.procs"; then
+  echo +memory 2> /dev/null > "$CGROUP/cgroup.subtree_control"
+  ACCOUNTING=${CGROUP%/}
+fi
+
+respond() {
+  printf 'RESULT %s %s %s\n' "$1" "$2" "$(wc -c < "$3")"
+  cat "$3"
+}
+
+# Moves a received test-case set into the cache if it matches its hash,
+# keeping only the CASE_CACHE_SIZE most recently used sets.
+store_cases() {
+  if [ "$(sha256sum < "$2" | cut -d' ' -f1)" = "$1" ]; then
+    cp "$2" "$CASE_ROOT/$1.json"
+    ls -t "$CASE_ROOT" | tail -n +$((CASE_CACHE_SIZE + 1)) | while read -r STALE; do rm -f "$CASE_ROOT/$STALE"; done
+  fi
+}
+
+# Builds (or reuses) the precompiled prelude for the job's harness and prints
+# its path, or nothing if the harness has no system includes or the prelude
+# could not be built. Only the PCH_CACHE_SIZE most recently used preludes are
+# kept.
+harness_prelude() {
+  grep -E '^[[:space:]]*#[[:space:]]*include[[:space:]]*<' harness > prelude.h || return 0
+  local DIR="$PCH_ROOT/$PCH_COMPILER-$(sha256sum < prelude.h | cut -c1-32)"
+  if [ ! -f "$DIR/prelude.h.gch" ]; then
+    local BUILD
+    BUILD=$(mktemp -d "$PCH_ROOT/build.XXXXXX")
+    cp prelude.h "$BUILD/prelude.h"
+    if g++ -x c++-header "$BUILD/prelude.h" -o "$BUILD/prelude.h.gch" < /dev/null > /dev/null 2>&1; then
+      mv -T "$BUILD" "$DIR" 2> /dev/null || rm -rf "$BUILD"
+    else
+      rm -rf "$BUILD"
+    fi
+  fi
+  if [ -f "$DIR/prelude.h.gch" ]; then
+    touch "$DIR"
+    ls -t "$PCH_ROOT" | grep -v '^build\.' | tail -n +$((PCH_CACHE_SIZE + 1)) | while read -r STALE; do rm -rf "$PCH_ROOT/$STALE"; done
+    echo "$DIR/prelude.h"
+  fi
+}
+
+# Sends the USAGE frame for the run that just finished and removes its cgroup,
+# killing anything the program left running.
+report_usage() {
+  local CPU_US=- PEAK_KB=-
+  if [ -n "$RUN_CGROUP" ]; then
+    CPU_US=$(sed -n 's/^usage_usec //p' "$RUN_CGROUP/cpu.stat")
+    if [ -r "$RUN_CGROUP/memory.peak" ]; then
+      PEAK_KB=$(( $(cat "$RUN_CGROUP/memory.peak") / 1024 ))
+    fi
+    echo 1 2> /dev/null > "$RUN_CGROUP/cgroup.kill"
+    for _ in 1 2 3 4 5; do
+      rmdir "$RUN_CGROUP" 2> /dev/null && break
+      sleep 0.01
+    done
+  fi
+  printf 'USAGE %s %s %s\n' "${CPU_US:--}" "$WALL_US" "$PEAK_KB"
+}
+
+# Forwards the harness's verdict lines as PROGRESS frames and keeps the rest
+# of the program's stderr.
+forward_progress() {
+  while IFS= read -r LINE || [ -n "$LINE" ]; do
+    if [[ $LINE =~ ^@@case\ "$PROGRESS_TOKEN"\ ([0-9]+)\ ([01])$ ]]; then
+      printf 'PROGRESS %s %s\n' "${BASH_REMATCH[1]}" "${BASH_REMATCH[2]}"
+    else
+      printf '%s\n' "$LINE" >> stderr
+    fi
+  done
+}
+
+while read -r VERB LANGUAGE CODE_LEN HARNESS_LEN INPUT_LEN INPUT_HASH; do
+  if [ "$VERB" = "PUT" ]; then
+    # PUT <hash> <bytes>
+    head -c "$CODE_LEN" > "$JOB_ROOT/put.json"
+    store_cases "$LANGUAGE" "$JOB_ROOT/put.json"
+    rm -f "$JOB_ROOT/put.json"
+    printf 'RESULT stored 0 0\n'
+    continue
+  fi
+  if [ "$VERB" != "JOB" ]; then
+    continue
+  fi
+
+  JOB_DIR=$(mktemp -d "$JOB_ROOT/job.XXXXXX")
+  cd "$JOB_DIR"
+  PROGRESS_TOKEN=$(od -An -N16 -tx1 /dev/urandom | tr -d ' \n')
+
+  head -c "$CODE_LEN" > code
+  head -c "$HARNESS_LEN" > harness
+  head -c "$INPUT_LEN" > input.json
+
+  if [ -n "$INPUT_HASH" ]; then
+    if [ "$INPUT_LEN" -gt 0 ]; then
+      store_cases "$INPUT_HASH" input.json
+    elif [ -f "$CASE_ROOT/$INPUT_HASH.json" ]; then
+      cp "$CASE_ROOT/$INPUT_HASH.json" input.json
+      touch "$CASE_ROOT/$INPUT_HASH.json"
+    else
+      printf 'RESULT missing_test_cases 0 0\n'
+      cd /; rm -rf "$JOB_DIR"
+      continue
+    fi
+  fi
+
+  case $LANGUAGE in
+    "cpp" | "c++")
+      SOURCE_FILE=main.cpp
+      PRELUDE=$(harness_prelude)
+      COMPILE="g++ ${PRELUDE:+-include $PRELUDE} $SOURCE_FILE -o output"
+      RUN="./output"
+      ;;
+    *)
+      echo "Unsupported language: $LANGUAGE" > stderr
+      respond compile_error 1 stderr
+      cd /; rm -rf "$JOB_DIR"
+      continue
+      ;;
+  esac
+
+  cat code harness > "$SOURCE_FILE"
+
+  if [ -n "$COMPILE" ] && ! $COMPILE < /dev/null > /dev/null 2> stderr; then
+    respond compile_error 1 stderr
+    cd /; rm -rf "$JOB_DIR"
+    continue
+  fi
+
+  : > stderr
+  mkfifo progress
+  forward_progress < progress &
+  FORWARDER=$!
+  RUN_CGROUP=
+  if [ -n "$ACCOUNTING" ] && mkdir "$ACCOUNTING/${JOB_DIR##*/}" 2> /dev/null; then
+    RUN_CGROUP=$ACCOUNTING/${JOB_DIR##*/}
+  fi
+  STARTED=${EPOCHREALTIME/./}
+  (
+    [ -z "$RUN_CGROUP" ] || echo $BASHPID 2> /dev/null > "$RUN_CGROUP/cgroup.procs"
+    ulimit -f 10240
+    export JUDGE_PROGRESS_TOKEN=$PROGRESS_TOKEN
+    exec timeout "$RUN_TIMEOUT" $RUN
+  ) < input.json > stdout 2> progress
+  EXIT_CODE=$?
+  WALL_US=$(( ${EPOCHREALTIME/./} - STARTED ))
+  wait $FORWARDER
+  report_usage
+
+  if [ $EXIT_CODE -eq 124 ]; then
+    respond timeout $EXIT_CODE stderr
+  elif [ $EXIT_CODE -ne 0 ]; then
+    respond runtime_error $EXIT_CODE stderr
+  else
+    respond ok 0 stdout
+  fi
+
+  cd /; rm -rf "$JOB_DIR"
+done
@@ -0,0 +1,565 @@
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import com.sun.management.OperatingSystemMXBean;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.Permission;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived Java judge worker.
+ *
+ * Speaks the same JOB/RESULT framing as worker.sh, but instead of running javac
+ * and a fresh java process per submission it keeps one warm JVM: submissions are
+ * compiled in memory through javax.tools.JavaCompiler and loaded into a throwaway
+ * class loader, so no state leaks from one submission into the next. The harness
+ * must declare "public class Main"; the test cases are fed to it on System.in.
+ *
+ * After JUDGE_MAX_RUNS jobs (or a job that overruns RUN_TIMEOUT, or leaves any
+ * thread running) the worker marks its final RESULT with "retire" and exits,
+ * and the pool starts a fresh one. Each submission runs in a ThreadGroup of its
+ * own, which the threads it starts join too, so the worker can tell when one
+ * is left behind.
+ *
+ * Like worker.sh it keeps the last CASE_CACHE_SIZE test-case sets keyed by their
+ * SHA-256, so jobs can reference a set by hash instead of resending it, and it
+ * accepts PUT frames that seed the cache ahead of time.
+ *
+ * Each job gets a fresh random token in the judge.progress.token system
+ * property. Lines the harness prints to System.err as
+ * "@@case <token> <index> <1|0>" with that token are sent right away as
+ * PROGRESS frames, ahead of the job's RESULT; lines with any other token stay
+ * in stderr, so markers printed without knowing the token do not count.
+ *
+ * A job that runs is preceded by "USAGE <cpu_us> <wall_us> <peak_memory_kb>":
+ * the CPU time the JVM used while the submission ran (covering every thread it
+ * started, and the collector and JIT work it caused, as a process of its own
+ * would be charged), its wall time, and how far the heap grew above where it
+ * stood when the run started. Compilation is not included.
+ *
+ * System.exit (or Runtime.halt) from a submission ends the submission, not the
+ * worker: an ExitGuard security manager turns it into the job's exit status,
+ * reported as it would be for a program of its own (ok for 0, runtime_error
+ * otherwise). This needs -Djava.security.manager=allow, which judge-worker.sh
+ * passes. If the submission left threads behind, the worker retires.
+ */
+@SuppressWarnings("removal")
+public class JudgeWorker {
+
+    private static final int MAX_RUNS = intEnv("JUDGE_MAX_RUNS", 200);
+
+    private static final long RUN_TIMEOUT_MS = intEnv("RUN_TIMEOUT", 10) * 1000L;
+
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+
+    private static final StandardJavaFileManager FILE_MANAGER = COMPILER.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+
+    private static final List<String> COMPILER_OPTIONS = Arrays.asList("-proc:none", "-nowarn", "-g");
+
+    private static final int CASE_CACHE_SIZE = intEnv("CASE_CACHE_SIZE", 64);
+
+    private static final ExitGuard GUARD = new ExitGuard(Thread.currentThread());
+
+    private static final String PROGRESS_TOKEN_PROPERTY = "judge.progress.token";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final OperatingSystemMXBean PROCESS = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    private static final Map<String, byte[]> TEST_CASES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > CASE_CACHE_SIZE;
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        InputStream protocolIn = new BufferedInputStream(new FileInputStream(FileDescriptor.in));
+        OutputStream protocolOut = new FileOutputStream(FileDescriptor.out);
+        // Only frames go to stdout. Anything else printing to System.out between runs,
+        // such as a thread a submission left behind, ends up on stderr instead.
+        System.setOut(System.err);
+        System.setSecurityManager(GUARD);
+        warmUp();
+
+        int runs = 0;
+        String header;
+        while ((header = readLine(protocolIn)) != null) {
+            String[] parts = header.split(" ");
+            if (parts.length == 3 && parts[0].equals("PUT")) {
+                storeTestCases(parts[1], protocolIn.readNBytes(Integer.parseInt(parts[2])));
+                protocolOut.write("RESULT stored 0 0\n".getBytes(StandardCharsets.US_ASCII));
+                protocolOut.flush();
+                continue;
+            }
+            if (parts.length < 5 || parts.length > 6 || !parts[0].equals("JOB")) {
+                continue;
+            }
+
+            String code = new String(protocolIn.readNBytes(Integer.parseInt(parts[2])), StandardCharsets.UTF_8);
+            String harness = new String(protocolIn.readNBytes(Integer.parseInt(parts[3])), StandardCharsets.UTF_8);
+            byte[] input = protocolIn.readNBytes(Integer.parseInt(parts[4]));
+
+            if (parts.length == 6) {
+                if (input.length > 0) {
+                    storeTestCases(parts[5], input);
+                } else if (TEST_CASES.containsKey(parts[5])) {
+                    input = TEST_CASES.get(parts[5]);
+                } else {
+                    protocolOut.write("RESULT missing_test_cases 0 0\n".getBytes(StandardCharsets.US_ASCII));
+                    protocolOut.flush();
+                    continue;
+                }
+            }
+
+            runs++;
+            Result result;
+            try {
+                result = judge(code + harness, input, protocolOut);
+            } catch (Throwable t) {
+                result = new Result("runtime_error", 1, stackTrace(t).getBytes(StandardCharsets.UTF_8));
+            }
+
+            if (result.wallMicros >= 0) {
+                String usage = "USAGE " + (result.cpuMicros >= 0 ? String.valueOf(result.cpuMicros) : "-") + " "
+                    + result.wallMicros + " " + (result.peakKb >= 0 ? String.valueOf(result.peakKb) : "-") + "\n";
+                protocolOut.write(usage.getBytes(StandardCharsets.US_ASCII));
+            }
+
+            boolean retire = result.leftRunning || runs >= MAX_RUNS;
+            String response = "RESULT " + result.status + " " + result.exitCode + " " + result.body.length
+                + (retire ? " retire" : "") + "\n";
+            protocolOut.write(response.getBytes(StandardCharsets.US_ASCII));
+            protocolOut.write(result.body);
+            protocolOut.flush();
+
+            if (retire) {
+                // The submission may still be running on its threads; halt rather than wait for them.
+                Runtime.getRuntime().halt(0);
+            }
+        }
+    }
+
+    private static Result judge(String source, byte[] input, OutputStream protocolOut) throws Exception {
+        Map<String, byte[]> classes;
+        try {
+            classes = compile(source);
+        } catch (CompilationFailed e) {
+            return new Result("compile_error", 1, e.getMessage().getBytes(StandardCharsets.UTF_8));
+        }
+
+        ClassLoader loader = new MemoryClassLoader(classes);
+        Method main = loader.loadClass("Main").getMethod("main", String[].class);
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        byte[] token = new byte[16];
+        RANDOM.nextBytes(token);
+        String progressToken = HexFormat.of().formatHex(token);
+        System.setProperty(PROGRESS_TOKEN_PROPERTY, progressToken);
+        ProgressFilter progress = new ProgressFilter(stderr, protocolOut, progressToken);
+        Throwable[] failure = new Throwable[1];
+        Run run = new Run(stdout, stderr);
+        ThreadGroup group = new ThreadGroup("submission");
+
+        List<MemoryPoolMXBean> heap = heapPools();
+        heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long heapBefore = heap.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+
+        Thread runner = new Thread(group, () -> {
+            InputStream originalIn = System.in;
+            PrintStream originalOut = System.out;
+            PrintStream originalErr = System.err;
+            System.setIn(new ByteArrayInputStream(input));
+            System.setOut(new PrintStream(stdout, false, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(progress, true, StandardCharsets.UTF_8));
+            try {
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                failure[0] = e.getCause();
+            } catch (Throwable t) {
+                failure[0] = t;
+            } finally {
+                System.out.flush();
+                System.setOut(originalOut);
+                System.setErr(originalErr);
+                System.setIn(originalIn);
+                run.finished.countDown();
+            }
+        }, "submission", 256L * 1024 * 1024);
+        runner.setContextClassLoader(loader);
+        runner.setDaemon(true);
+        long started = System.nanoTime();
+        long cpuBefore = PROCESS.getProcessCpuTime();
+        boolean finished;
+        GUARD.run = run;
+        try {
+            runner.start();
+            finished = run.finished.await(RUN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            GUARD.run = null;
+        }
+        long wallNanos = System.nanoTime() - started;
+        // Give the submission's threads a moment to unwind, after an exit in particular.
+        boolean leftRunning = !finished || !settle(group, 100);
+        long cpuNanos = PROCESS.getProcessCpuTime() - cpuBefore;
+        progress.close();
+
+        Result result;
+        if (run.exited) {
+            result = run.exitStatus == 0
+                ? new Result("ok", 0, run.stdoutAtExit)
+                : new Result("runtime_error", run.exitStatus, run.stderrAtExit);
+        } else if (!finished) {
+            result = new Result("timeout", 124, new byte[0]);
+        } else if (failure[0] != null) {
+            stderr.write(stackTrace(failure[0]).getBytes(StandardCharsets.UTF_8));
+            result = new Result("runtime_error", 1, stderr.toByteArray());
+        } else {
+            result = new Result("ok", 0, stdout.toByteArray());
+        }
+        result.leftRunning = leftRunning;
+        result.wallMicros = wallNanos / 1000;
+        result.cpuMicros = cpuNanos < 0 ? -1 : cpuNanos / 1000;
+        long heapPeak = heap.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        result.peakKb = Math.max(0, heapPeak - heapBefore) / 1024;
+        return result;
+    }
+
+    /**
+     * Waits up to the given time for every thread in the group to end.
+     *
+     * @return true if none is left running
+     */
+    private static boolean settle(ThreadGroup group, long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (true) {
+            Thread[] threads = new Thread[group.activeCount() + 1];
+            int count = group.enumerate(threads);
+            if (count == 0) {
+                return true;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            threads[0].join(remaining);
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+    }
+
+    private static void storeTestCases(String hash, byte[] testCases) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(testCases);
+        if (HexFormat.of().formatHex(digest).equals(hash)) {
+            TEST_CASES.put(hash, testCases);
+        }
+    }
+
+    private static Map<String, byte[]> compile(String source) throws CompilationFailed {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        MemoryFileManager fileManager = new MemoryFileManager(FILE_MANAGER);
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Main.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        boolean success = COMPILER.getTask(null, fileManager, diagnostics, COMPILER_OPTIONS, null, List.of(file)).call();
+        if (success) {
+            return fileManager.classes;
+        }
+
+        StringBuilder errors = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.append("Main.java:").append(diagnostic.getLineNumber()).append(": error: ")
+                    .append(diagnostic.getMessage(null)).append('\n');
+            }
+        }
+        throw new CompilationFailed(errors.toString());
+    }
+
+    /**
+     * Pushes javac and the reflective launch path through the JIT once so the
+     * first real submission does not pay for it.
+     */
+    private static void warmUp() {
+        try {
+            for (int i = 0; i < 3; i++) {
+                judge("public class Main { public static void main(String[] args) { System.out.print(args.length); } }", new byte[0], null);
+            }
+        } catch (Exception e) {
+            System.err.println("Warm-up failed: " + e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int next;
+        while ((next = in.read()) != '\n') {
+            if (next == -1) {
+                return line.size() == 0 ? null : line.toString(StandardCharsets.US_ASCII);
+            }
+            line.write(next);
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static String stackTrace(Throwable t) {
+        StringWriter writer = new StringWriter();
+        t.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    private static int intEnv(String name, int fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? fallback : Integer.parseInt(value);
+    }
+
+    /**
+     * Splits the submission's stderr into verdict lines carrying the job's
+     * token, forwarded as PROGRESS frames, and everything else. Once closed it
+     * drops further writes, so a timed-out submission cannot interleave with
+     * the RESULT frame.
+     */
+    private static final class ProgressFilter extends OutputStream {
+        private static final byte[] MARKER = "@@case ".getBytes(StandardCharsets.US_ASCII);
+
+        private final ByteArrayOutputStream stderr;
+        private final OutputStream protocolOut;
+        private final String token;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private boolean closed;
+
+        ProgressFilter(ByteArrayOutputStream stderr, OutputStream protocolOut, String token) {
+            this.stderr = stderr;
+            this.protocolOut = protocolOut;
+            this.token = token;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (closed) {
+                return;
+            }
+            if (b != '\n') {
+                line.write(b);
+                return;
+            }
+            String[] parts = line.toString(StandardCharsets.US_ASCII).split(" ");
+            if (protocolOut != null && startsWithMarker() && parts.length == 4 && parts[1].equals(token)
+                && parts[2].matches("\\d+") && (parts[3].equals("0") || parts[3].equals("1"))) {
+                protocolOut.write(("PROGRESS " + parts[2] + " " + parts[3] + "\n").getBytes(StandardCharsets.US_ASCII));
+                protocolOut.flush();
+            } else {
+                stderr.writeBytes(line.toByteArray());
+                stderr.write('\n');
+            }
+            line.reset();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed && line.size() > 0) {
+                stderr.writeBytes(line.toByteArray());
+                stderr.write('\n');
+            }
+            closed = true;
+        }
+
+        private boolean startsWithMarker() {
+            byte[] bytes = line.toByteArray();
+            return bytes.length > MARKER.length && Arrays.equals(bytes, 0, MARKER.length, MARKER, 0, MARKER.length);
+        }
+    }
+
+    /**
+     * Lets any thread but the worker's own do anything, except end the JVM or
+     * replace this guard. An exit from elsewhere is recorded on the current
+     * run, which it ends, and unwinds the calling thread with SubmissionExit.
+     */
+    private static final class ExitGuard extends SecurityManager {
+        private final Thread worker;
+        volatile Run run;
+
+        ExitGuard(Thread worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public void checkExit(int status) {
+            if (Thread.currentThread() == worker) {
+                return;
+            }
+            Run current = run;
+            if (current != null) {
+                current.exit(status);
+            }
+            throw new SubmissionExit(status);
+        }
+
+        @Override
+        public void checkPermission(Permission permission) {
+            if (permission.getName().equals("setSecurityManager") && Thread.currentThread() != worker) {
+                throw new SecurityException("The judge does not allow replacing the security manager");
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission permission, Object context) {
+            checkPermission(permission);
+        }
+    }
+
+    /**
+     * The submission's side of a job: finished once its main method returns or
+     * it asks to exit. On exit it keeps the output written so far, as a
+     * process would have left it.
+     */
+    private static final class Run {
+        final CountDownLatch finished = new CountDownLatch(1);
+        private final ByteArrayOutputStream stdout;
+        private final ByteArrayOutputStream stderr;
+        volatile boolean exited;
+        volatile int exitStatus;
+        volatile byte[] stdoutAtExit;
+        volatile byte[] stderrAtExit;
+
+        Run(ByteArrayOutputStream stdout, ByteArrayOutputStream stderr) {
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        synchronized void exit(int status) {
+            if (!exited) {
+                exitStatus = status;
+                stdoutAtExit = stdout.toByteArray();
+                stderrAtExit = stderr.toByteArray();
+                exited = true;
+            }
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Thrown in place of ending the JVM. An Error, so "catch (Exception e)" in
+     * the submission does not swallow it.
+     */
+    private static final class SubmissionExit extends Error {
+        private static final long serialVersionUID = 1L;
+
+        SubmissionExit(int status) {
+            super("System.exit(" + status + ")", null, false, false);
+        }
+    }
+
+    private static final class CompilationFailed extends Exception {
+        CompilationFailed(String errors) {
+            super(errors);
+        }
+    }
+
+    private static final class Result {
+        final String status;
+        final int exitCode;
+        final byte[] body;
+        boolean leftRunning;
+        long cpuMicros = -1;
+        long wallMicros = -1;
+        long peakKb = -1;
+
+        Result(String status, int exitCode, byte[] body) {
+            this.status = status;
+            this.exitCode = exitCode;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Keeps compiled classes in memory instead of writing .class files.
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        final Map<String, byte[]> classes = new HashMap<>();
+
+        MemoryFileManager(JavaFileManager delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classes.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * One loader per submission. Its parent is the platform loader, so
+     * submissions see the JDK but not the worker itself.
+     */
+    private static final class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(Map<String, byte[]> classes) {
+            super(ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.remove(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
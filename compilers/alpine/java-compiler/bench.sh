@@ -0,0 +1,46 @@
+#!/bin/bash
+
+# Measures what starting the JVMs costs each submission in the
+# one-process-per-run model: compiling and running cds/Main.java with and
+# without the Class Data Sharing archives built by cds.sh.
+#
+#   docker run --rm --entrypoint /workspace/bench.sh algowar/java-compiler [runs]
+#
+# Prints the mean javac, java and total wall time per submission.
+
+RUNS=${1:-10}
+CDS_DIR=${CDS_DIR:-/opt/cds}
+
+if [ ! -f "$CDS_DIR/env.sh" ]; then
+  echo "No CDS archives in $CDS_DIR; run cds.sh first" >&2
+  exit 1
+fi
+. "$CDS_DIR/env.sh"
+
+WORK_DIR=$(mktemp -d)
+cp "$CDS_DIR/Main.java" "$CDS_DIR/input.json" "$WORK_DIR"
+cd "$WORK_DIR"
+
+# measure <label> <javac options> <java options>
+measure() {
+  local COMPILE_US=0 RUN_US=0 STARTED
+  for _ in $(seq "$RUNS"); do
+    STARTED=${EPOCHREALTIME/./}
+    javac $2 Main.java || exit 1
+    COMPILE_US=$(( COMPILE_US + ${EPOCHREALTIME/./} - STARTED ))
+    STARTED=${EPOCHREALTIME/./}
+    java $3 Main < input.json > /dev/null 2>&1 || exit 1
+    RUN_US=$(( RUN_US + ${EPOCHREALTIME/./} - STARTED ))
+  done
+  printf '%-26s %9d %9d %9d\n' "$1" $(( COMPILE_US / RUNS / 1000 )) $(( RUN_US / RUNS / 1000 )) \
+    $(( (COMPILE_US + RUN_US) / RUNS / 1000 ))
+}
+
+echo "$(java -version 2>&1 | head -1), $RUNS runs each"
+printf '%-26s %9s %9s %9s\n' "" "javac ms" "java ms" "total ms"
+measure "no archives" "" ""
+measure "archives" "${CDS_JAVAC_OPTS/-J-XX:TieredStopAtLevel=1/}" "$CDS_JAVA_OPTS"
+measure "archives + C1-only javac" "$CDS_JAVAC_OPTS" "$CDS_JAVA_OPTS"
+
+cd /
+rm -rf "$WORK_DIR"
@@ -9,13 +9,18 @@ LANGUAGE=$1
 SOURCE_FILE=$2
 OUTPUT_FILE="output"
 
+# Class Data Sharing archives built into the image by cds.sh.
+if [ -f /opt/cds/env.sh ]; then
+  . /opt/cds/env.sh
+fi
+
 cd /workspace
 
 case $LANGUAGE in
   "java")
-    javac "$SOURCE_FILE"
+    javac $CDS_JAVAC_OPTS "$SOURCE_FILE"
     OUTPUT_FILE=$(basename "$SOURCE_FILE" .java)
-    java "$OUTPUT_FILE"
+    java $CDS_JAVA_OPTS "$OUTPUT_FILE"
     exit 0
     ;;
   *)
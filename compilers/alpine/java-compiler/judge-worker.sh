@@ -0,0 +1,7 @@
+#!/bin/bash
+
+# Starts the persistent JVM judge worker (see JudgeWorker.java). Used by the
+# backend's local executor pool in place of worker.sh for Java submissions.
+# The security manager is only there to catch System.exit from submissions.
+
+exec java -XX:+UseSerialGC -Djava.security.manager=allow -cp /opt/judge JudgeWorker
@@ -0,0 +1,191 @@
+"""Fork server for the python3 judge worker.
+
+worker.sh starts this once and hands it every python3 run instead of starting
+a fresh interpreter per job. The modules harnesses and solutions commonly use
+are imported here, once; each run is a forked child that starts with them
+already loaded:
+
+    request:  RUN <job_dir> <cgroup_dir or -> <timeout_seconds> <progress_token>\\n
+    response: EXIT <exit_code>\\n
+
+The child runs <job_dir>/main.py as __main__ with <job_dir>/input.json on
+stdin, stdout written to <job_dir>/stdout and stderr to the <job_dir>/progress
+fifo, which worker.sh reads for "@@case" lines, exactly as when it runs
+"python3 main.py" itself; the job's token is in $JUDGE_PROGRESS_TOKEN. Before
+the program starts, the child moves itself into the run's cgroup (so USAGE
+covers the program only) and sets its resource limits. Exit codes follow
+timeout(1): 124 when the run outlived its timeout, 128 + signal when it was
+killed.
+
+Environment:
+    ZYGOTE_PRELOAD   comma-separated modules to import up front
+    RUN_MEMORY_MB    address-space limit per run (0 for none, default 512)
+    RUN_OUTPUT_KB    largest file a run may write (default 10240)
+"""
+
+import gc
+import importlib
+import os
+import resource
+import select
+import signal
+import sys
+import time
+import traceback
+import types
+
+PRELOAD = os.environ.get(
+    "ZYGOTE_PRELOAD",
+    "array,bisect,collections,copy,dataclasses,decimal,enum,fractions,functools,heapq,itertools,"
+    "json,math,operator,queue,random,re,statistics,string,typing",
+)
+MEMORY_MB = int(os.environ.get("RUN_MEMORY_MB", "512"))
+OUTPUT_KB = int(os.environ.get("RUN_OUTPUT_KB", "10240"))
+
+
+def preload():
+    for name in filter(None, (module.strip() for module in PRELOAD.split(","))):
+        try:
+            importlib.import_module(name)
+        except ImportError as e:
+            print("zygote: not preloading %s: %s" % (name, e), file=sys.stderr)
+
+
+def run_child(job_dir, cgroup, timeout, token):
+    """Runs in the forked child; never returns."""
+    code = 1
+    try:
+        os.setpgid(0, 0)
+        if cgroup != "-":
+            try:
+                with open(os.path.join(cgroup, "cgroup.procs"), "w") as procs:
+                    procs.write(str(os.getpid()))
+            except OSError:
+                pass
+        cpu_seconds = int(timeout) + 1
+        resource.setrlimit(resource.RLIMIT_CPU, (cpu_seconds, cpu_seconds))
+        resource.setrlimit(resource.RLIMIT_FSIZE, (OUTPUT_KB * 1024, OUTPUT_KB * 1024))
+        resource.setrlimit(resource.RLIMIT_CORE, (0, 0))
+        if MEMORY_MB > 0:
+            resource.setrlimit(resource.RLIMIT_AS, (MEMORY_MB << 20, MEMORY_MB << 20))
+        signal.signal(signal.SIGPIPE, signal.SIG_DFL)
+
+        os.chdir(job_dir)
+        os.environ["JUDGE_PROGRESS_TOKEN"] = token
+        sys.stdin = os.fdopen(0, "r", closefd=False)
+        sys.stdout = os.fdopen(1, "w", closefd=False)
+        sys.stderr = os.fdopen(2, "w", buffering=1, closefd=False)
+        sys.argv = ["main.py"]
+        sys.path[0] = job_dir
+
+        # Every child would otherwise continue the zygote's random sequence.
+        if "random" in sys.modules:
+            sys.modules["random"].seed()
+
+        main = types.ModuleType("__main__")
+        main.__file__ = "main.py"
+        sys.modules["__main__"] = main
+        with open("main.py", "rb") as source:
+            program = compile(source.read(), "main.py", "exec")
+        code = 0
+        exec(program, main.__dict__)
+    except SystemExit as e:
+        if e.code is None:
+            code = 0
+        elif isinstance(e.code, int):
+            code = e.code
+        else:
+            print(e.code, file=sys.stderr)
+            code = 1
+    except BaseException as e:
+        # Leave this frame out, so the traceback reads as if main.py ran on its own.
+        traceback.print_exception(type(e), e, e.__traceback__.tb_next)
+        code = 1
+    try:
+        sys.stdout.flush()
+        sys.stderr.flush()
+    except BaseException:
+        code = code or 1
+    os._exit(code & 0xFF)
+
+
+def wait_child(pid, timeout):
+    """Waits for the child up to timeout seconds, killing its process group after that."""
+    timed_out = False
+    try:
+        pidfd = os.pidfd_open(pid)
+    except (AttributeError, OSError):
+        pidfd = None
+    if pidfd is not None:
+        try:
+            ready, _, _ = select.select([pidfd], [], [], timeout)
+            timed_out = not ready
+        finally:
+            os.close(pidfd)
+    else:
+        deadline = time.monotonic() + timeout
+        while True:
+            reaped, status = os.waitpid(pid, os.WNOHANG)
+            if reaped:
+                return exit_code(status)
+            if time.monotonic() >= deadline:
+                timed_out = True
+                break
+            time.sleep(0.002)
+
+    if timed_out:
+        try:
+            os.killpg(pid, signal.SIGKILL)
+        except ProcessLookupError:
+            pass
+    _, status = os.waitpid(pid, 0)
+    return 124 if timed_out else exit_code(status)
+
+
+def exit_code(status):
+    code = os.waitstatus_to_exitcode(status)
+    return 128 - code if code < 0 else code
+
+
+def serve():
+    preload()
+    # Keep the preloaded objects out of the collector so children do not
+    # copy the pages they live on just by running a collection.
+    gc.freeze()
+    replies = sys.stdout
+    replies.write("READY\n")
+    replies.flush()
+
+    for line in sys.stdin:
+        parts = line.split()
+        if len(parts) != 5 or parts[0] != "RUN":
+            continue
+        job_dir, cgroup, timeout, token = parts[1], parts[2], float(parts[3]), parts[4]
+
+        # Opened here rather than in the child so the progress fifo always gets
+        # a writer, and its reader an end of file, even if the child fails early.
+        stdin = os.open(os.path.join(job_dir, "input.json"), os.O_RDONLY)
+        stdout = os.open(os.path.join(job_dir, "stdout"), os.O_WRONLY | os.O_CREAT | os.O_TRUNC, 0o644)
+        stderr = os.open(os.path.join(job_dir, "progress"), os.O_WRONLY)
+
+        pid = os.fork()
+        if pid == 0:
+            os.dup2(stdin, 0)
+            os.dup2(stdout, 1)
+            os.dup2(stderr, 2)
+            for fd in (stdin, stdout, stderr):
+                os.close(fd)
+            run_child(job_dir, cgroup, timeout, token)
+
+        for fd in (stdin, stdout, stderr):
+            os.close(fd)
+        try:
+            os.setpgid(pid, pid)
+        except OSError:
+            pass
+        replies.write("EXIT %d\n" % wait_child(pid, timeout))
+        replies.flush()
+
+
+if __name__ == "__main__":
+    serve()
@@ -0,0 +1,50 @@
+#!/bin/bash
+
+# Builds the Class Data Sharing archives for javac and for the submission JVM,
+# once, at image build time. Every submission compiles and runs in a fresh JVM
+# (entrypoint.sh, worker.sh); with the archives those JVMs map the JDK classes
+# a compile or a harness needs from a file that was parsed and verified ahead
+# of time instead of loading them one by one.
+#
+# The archives are trained by compiling and running cds/Main.java, a program
+# shaped like a submission and its harness, on cds/input.json. JDK 13 and later
+# dump what the training run loaded at exit (-XX:ArchiveClassesAtExit, layered
+# on the JDK's default archive); older JDKs record a class list and dump a
+# static archive from it. The training program's own classes are not kept:
+# classes loaded from a directory cannot be shared.
+#
+# Writes $CDS_DIR/javac.jsa, $CDS_DIR/java.jsa and $CDS_DIR/env.sh, which sets
+# CDS_JAVAC_OPTS and CDS_JAVA_OPTS for the scripts that start javac and java.
+
+set -e
+
+CDS_DIR=${CDS_DIR:-/opt/cds}
+TRAIN_DIR=$(mktemp -d)
+cp "$CDS_DIR/Main.java" "$CDS_DIR/input.json" "$TRAIN_DIR"
+cd "$TRAIN_DIR"
+
+# javac is short-lived: C1 alone compiles its hot code sooner than C2 pays off.
+JAVAC_OPTS="-J-XX:TieredStopAtLevel=1"
+# A mismatched archive is ignored; its warning goes to stderr, not the program's stdout.
+LOG_OPTS="-Xlog:disable -Xlog:all=warning:stderr"
+
+FEATURE=$(java -XshowSettings:properties -version 2>&1 | sed -n 's/^ *java.specification.version = //p')
+if [ "${FEATURE%%.*}" -ge 13 ]; then
+  javac $JAVAC_OPTS -J-XX:ArchiveClassesAtExit="$CDS_DIR/javac.jsa" Main.java
+  java -XX:ArchiveClassesAtExit="$CDS_DIR/java.jsa" Main < input.json > /dev/null 2>&1
+else
+  javac $JAVAC_OPTS -J-XX:DumpLoadedClassList=javac.classlist Main.java
+  java -XX:DumpLoadedClassList=java.classlist Main < input.json > /dev/null 2>&1
+  for NAME in javac java; do
+    grep -v -e '^Main' -e '^Solution' "$NAME.classlist" > "$NAME.list"
+    java -Xshare:dump -XX:SharedClassListFile="$NAME.list" -XX:SharedArchiveFile="$CDS_DIR/$NAME.jsa" > /dev/null
+  done
+fi
+
+cat > "$CDS_DIR/env.sh" <<ENV
+CDS_JAVAC_OPTS="$JAVAC_OPTS -J-XX:SharedArchiveFile=$CDS_DIR/javac.jsa $(printf -- '-J%s ' $LOG_OPTS)"
+CDS_JAVA_OPTS="-XX:SharedArchiveFile=$CDS_DIR/java.jsa $LOG_OPTS"
+ENV
+
+cd /
+rm -rf "$TRAIN_DIR"
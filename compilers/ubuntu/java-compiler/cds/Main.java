@@ -0,0 +1,87 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Training run for the Class Data Sharing archives (see cds.sh). It is shaped
+ * like a submission concatenated with its harness: a Solution using the usual
+ * collections, and a Main that reads the test cases from stdin, reports each
+ * verdict on stderr and prints the result document. Whatever JDK classes it
+ * loads while being compiled and run end up in the archives.
+ */
+class Solution {
+    public int[] twoSum(int[] nums, int target) {
+        Map<Integer, Integer> seen = new HashMap<>();
+        for (int i = 0; i < nums.length; i++) {
+            Integer other = seen.get(target - nums[i]);
+            if (other != null) {
+                return new int[] { other, i };
+            }
+            seen.put(nums[i], i);
+        }
+        return new int[0];
+    }
+
+    public List<List<Integer>> groups(int[] nums) {
+        TreeMap<Integer, List<Integer>> byDigit = new TreeMap<>();
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Comparator.reverseOrder());
+        Deque<Integer> stack = new ArrayDeque<>();
+        Set<Integer> unique = new HashSet<>();
+        for (int n : nums) {
+            byDigit.computeIfAbsent(Math.abs(n) % 10, key -> new ArrayList<>()).add(n);
+            heap.offer(n);
+            stack.push(n);
+            unique.add(n);
+        }
+        List<List<Integer>> result = new ArrayList<>(byDigit.values());
+        result.add(Arrays.stream(nums).boxed().sorted().collect(Collectors.toList()));
+        result.add(new ArrayList<>(new LinkedHashSet<>(stack)));
+        result.add(Collections.singletonList(heap.isEmpty() ? 0 : heap.peek() + unique.size()));
+        return result;
+    }
+}
+
+public class Main {
+    private static final Pattern CASE = Pattern.compile("\\{\"input\":\\s*\\{\"nums\":\\s*\\[([^\\]]*)\\],\\s*\"target\":\\s*(-?\\d+)\\},\\s*\"output\":\\s*\\[([^\\]]*)\\]\\}");
+
+    public static void main(String[] args) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        String input = reader.lines().collect(Collectors.joining("\n"));
+
+        String token = System.getProperty("judge.progress.token");
+        Matcher matcher = CASE.matcher(input);
+        int index = 0;
+        int passed = 0;
+        StringBuilder results = new StringBuilder();
+        long started = System.nanoTime();
+        while (matcher.find()) {
+            int[] nums = parse(matcher.group(1));
+            int target = Integer.parseInt(matcher.group(2));
+            int[] expected = parse(matcher.group(3));
+            int[] output = new Solution().twoSum(nums, target);
+            new Solution().groups(nums);
+            boolean ok = Arrays.equals(expected, output);
+            passed += ok ? 1 : 0;
+            System.err.println("@@case " + token + " " + index + " " + (ok ? 1 : 0));
+            if (results.length() > 0) {
+                results.append(',');
+            }
+            results.append(String.format("{\"case\":%d,\"passed\":%b,\"output\":%s,\"expected\":%s}",
+                index + 1, ok, Arrays.toString(output).replace(" ", ""), Arrays.toString(expected).replace(" ", "")));
+            index++;
+        }
+        double runtimeMs = (System.nanoTime() - started) / 1e6;
+        System.out.println("{\"success\":true,\"all_passed\":" + (passed == index) + ",\"test_cases_passed\":" + passed
+            + ",\"total_test_cases\":" + index + ",\"runtime_ms\":" + runtimeMs + ",\"results\":[" + results + "]}");
+    }
+
+    private static int[] parse(String list) {
+        if (list.trim().isEmpty()) {
+            return new int[0];
+        }
+        return Arrays.stream(list.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -6,7 +6,9 @@ import Playground from "./playground/playground";
 import styles from "./competitive-workspace.module.css";
 import ProblemHeader from "./problem-header/problem-header";
 import { useRouter } from "next/navigation";
+import { Socket } from "socket.io-client";
 import { useSubmissionStore } from "@/store/submission-store";
+import { judge } from "@/utils/judge";
 import SubmissionResultModal from "./submission-result-modal/submission-result-modal";
 
 interface TestResult {
@@ -65,6 +67,7 @@ interface SubmissionResult {
   test_cases_passed?: number;
   total_test_cases?: number;
   runtime_ms?: number;
+  peak_memory_kb?: number;
   first_case_failed?: {
     case?: string;
     passed?: boolean;
@@ -77,18 +80,18 @@ interface SubmissionResult {
 
 type CompetitiveWorkspaceProps = {
   slug: any;
+  socket: Socket | null;
   isSidebarOpen: boolean;
   setIsSidebarOpen: (isOpen: boolean) => void;
   updateLiveCodeLineCount: (currentPlayer: number) => void;
-  updateLiveTestCasesCount: (currentPlayerAccepted: number, currentPlayerTotal: number) => void;
 };
 
 const CompetitiveWorkspace: React.FC<CompetitiveWorkspaceProps> = ({
   slug,
+  socket,
   isSidebarOpen,
   setIsSidebarOpen,
   updateLiveCodeLineCount,
-  updateLiveTestCasesCount,
   }) => {
   const [problem, setProblem] = useState<Problem | null>(null);
   const [code, setCode] = useState<string | null>(null);
@@ -153,23 +156,10 @@ const CompetitiveWorkspace: React.FC<CompetitiveWorkspaceProps> = ({
     };
 
     try {
-      const response = await fetch("http://localhost:8080/compile/submit", {
-        method: "POST",
-        headers: {
-          "Content-Type": "application/json",
-        },
-        body: JSON.stringify(requestBody),
-      });
-
-      if (!response.ok) {
-        throw new Error(`HTTP error! Status: ${response.status}`);
-      }
-
-      const result = await response.json();
+      const result = await judge<SubmissionResult>("submit", requestBody, socket);
       console.log(result);
       setResult(result);
       setSubmissionModalOpen(true);
-      updateLiveTestCasesCount(result.test_cases_passed, result.total_test_cases);
     } catch (error) {
       console.error("Error during submission:", error);
     } finally {
@@ -186,19 +176,7 @@ const CompetitiveWorkspace: React.FC<CompetitiveWorkspaceProps> = ({
     };
 
     try {
-      const response = await fetch("http://localhost:8080/compile/run", {
-        method: "POST",
-        headers: {
-          "Content-Type": "application/json",
-        },
-        body: JSON.stringify(requestBody),
-      });
-
-      if (!response.ok) {
-        throw new Error(`HTTP error! Status: ${response.status}`);
-      }
-
-      const result = await response.json();
+      const result = await judge<TestResult>("run", requestBody, socket);
       setTestResults(result);
     } catch (error) {
       console.error("Error during code execution:", error);
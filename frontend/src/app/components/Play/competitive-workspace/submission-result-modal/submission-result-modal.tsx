@@ -11,6 +11,7 @@ interface SubmissionResult {
     test_cases_passed?: number;
     total_test_cases?: number;
     runtime_ms?: number;
+    peak_memory_kb?: number;
     first_case_failed?: {
       case?: string;
       passed?: boolean;
@@ -136,6 +137,11 @@ interface SubmissionResult {
             <Text style={{ color: "#f4f4f5" }}>
               Runtime: {submissionResult.runtime_ms}ms
             </Text>
+            {submissionResult.peak_memory_kb !== undefined && (
+              <Text style={{ color: "#f4f4f5" }}>
+                Memory: {(submissionResult.peak_memory_kb / 1024).toFixed(1)}MB
+              </Text>
+            )}
           </Alert>
         )}
 
@@ -74,6 +74,11 @@ const SubmissionResultView: React.FC = () => {
           <Text style={{ color: "#f4f4f5" }}>
             Runtime: {submissionResult.runtime_ms}ms
           </Text>
+          {submissionResult.peak_memory_kb !== undefined && (
+            <Text style={{ color: "#f4f4f5" }}>
+              Memory: {(submissionResult.peak_memory_kb / 1024).toFixed(1)}MB
+            </Text>
+          )}
         </Alert>
       )}
 
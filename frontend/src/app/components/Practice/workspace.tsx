@@ -6,7 +6,8 @@ import Playground from "./playground/playground";
 import styles from "./workspace.module.css";
 import ProblemHeader from "./problem-header/problem-header";
 import { useRouter } from "next/navigation";
-import { useSubmissionStore } from "@/store/submission-store";
+import { useSubmissionStore, SubmissionResult } from "@/store/submission-store";
+import { judge } from "@/utils/judge";
 
 interface TestResult {
   results: Array<{
@@ -120,19 +121,7 @@ const Workspace = ({ slug }: { slug: any }) => {
     };
 
     try {
-      const response = await fetch("http://localhost:8080/compile/submit", {
-        method: "POST",
-        headers: {
-          "Content-Type": "application/json",
-        },
-        body: JSON.stringify(requestBody),
-      });
-
-      if (!response.ok) {
-        throw new Error(`HTTP error! Status: ${response.status}`);
-      }
-
-      const result = await response.json();
+      const result = await judge<SubmissionResult>("submit", requestBody);
       
       // Use the Zustand store to set submission data
       setSubmission(
@@ -160,19 +149,7 @@ const Workspace = ({ slug }: { slug: any }) => {
     };
 
     try {
-      const response = await fetch("http://localhost:8080/compile/run", {
-        method: "POST",
-        headers: {
-          "Content-Type": "application/json",
-        },
-        body: JSON.stringify(requestBody),
-      });
-
-      if (!response.ok) {
-        throw new Error(`HTTP error! Status: ${response.status}`);
-      }
-
-      const result = await response.json();
+      const result = await judge<TestResult>("run", requestBody);
       setTestResults(result);
     } catch (error) {
       console.error("Error during code execution:", error);
@@ -20,6 +20,17 @@ interface LiveCodeLineCount {
   opponent: number;
 }
 
+interface PlayerStateDelta {
+  lineCount?: number;
+  accepted?: number;
+  total?: number;
+}
+
+interface TimerState {
+  deadline: number;
+  serverTime: number;
+}
+
 interface LiveTestCasesCount {
   currentPlayerAccepted: number;
   currentPlayerTotal: number;
@@ -34,6 +45,8 @@ export default function ProblemPageWrapper() {
   const [error, setError] = useState<string | null>(null);
   const [problemSlug, setProblemSlug] = useState<string | null>(null);
   const [timer, setTimer] = useState<number | null>(null);
+  // When the match ends, on this page's performance.now() clock
+  const [timerDeadline, setTimerDeadline] = useState<number | null>(null);
   const [players, setPlayers] = useState<PlayerData[]>([]);
   const [strikes, setStrikes] = useState<number>(3); // Track strikes
   const [modalOpened, setModalOpened] = useState<boolean>(false); // Control modal visibility
@@ -80,11 +93,16 @@ export default function ProblemPageWrapper() {
       setPlayers(playersData);
     });
 
-    socketConnection.on("timer_update", (remainingTime: number) => {
-      setTimer(remainingTime);
-    });
+    // The server sends the deadline when the timer starts and again every
+    // minute or so; the countdown itself runs here.
+    const syncTimer = ({ deadline, serverTime }: TimerState) => {
+      setTimerDeadline(performance.now() + (deadline - serverTime));
+    };
+    socketConnection.on("timer_started", syncTimer);
+    socketConnection.on("timer_sync", syncTimer);
 
     socketConnection.on("timer_ended", () => {
+      setTimerDeadline(null);
       setTimer(0);
     });
 
@@ -96,21 +114,29 @@ export default function ProblemPageWrapper() {
       console.log("Game has been forfeited");
     });
 
-    socketConnection.on("live_code_line_count", (response: {lineCount: number, username: string}) => {
-      if (response.username === username) return;
-      setLiveCodeLineCount((prev) => ({
-        ...prev,
-        opponent: response.lineCount,
-      }));
-    });
-
-    socketConnection.on("live_test_cases_count", (response: {accepted: number, total: number, username: string}) => {
-      if (response.username === username) return;
-      setLiveTestCasesCount((prev) => ({
-        ...prev,
-        opponentAccepted: response.accepted,
-        opponentTotal: response.total,
-      }));
+    // The server batches what changed since its last flush, by player; a
+    // player never gets their own line count back
+    socketConnection.on("room_state_delta", (delta: Record<string, PlayerStateDelta>) => {
+      Object.entries(delta).forEach(([player, state]) => {
+        const isCurrentPlayer = player === username;
+        if (!isCurrentPlayer && state.lineCount !== undefined) {
+          setLiveCodeLineCount((prev) => ({
+            ...prev,
+            opponent: state.lineCount as number,
+          }));
+        }
+        if (state.accepted !== undefined && state.total !== undefined) {
+          setLiveTestCasesCount((prev) => (isCurrentPlayer ? {
+            ...prev,
+            currentPlayerAccepted: state.accepted as number,
+            currentPlayerTotal: state.total as number,
+          } : {
+            ...prev,
+            opponentAccepted: state.accepted as number,
+            opponentTotal: state.total as number,
+          }));
+        }
+      });
     });
 
     setSocket(socketConnection);
@@ -121,6 +147,19 @@ export default function ProblemPageWrapper() {
     };
   }, [gid, router, username]);
 
+  // Count down to the deadline; the server's timer_ended has the last word
+  useEffect(() => {
+    if (timerDeadline === null) return;
+
+    const tick = () => {
+      setTimer(Math.max(0, Math.ceil((timerDeadline - performance.now()) / 1000)));
+    };
+    tick();
+    const interval = setInterval(tick, 250);
+
+    return () => clearInterval(interval);
+  }, [timerDeadline]);
+
   // Function to emit live code line count updates
   const updateLiveCodeLineCount = (currentPlayer: number) => {
     setLiveCodeLineCount((prev) => ({
@@ -136,24 +175,6 @@ export default function ProblemPageWrapper() {
     }
   };
 
-  const updateLiveTestCasesCount = (currentPlayerAccepted: number, currentPlayerTotal: number) => {
-    if (!currentPlayerTotal) return;
-    if (!currentPlayerAccepted) return;
-    setLiveTestCasesCount((prev) => ({
-      ...prev,
-      currentPlayerAccepted,
-      currentPlayerTotal,
-    }));
-
-    if (socket) {
-      socket.emit("live_test_cases_count", {
-        accepted: currentPlayerAccepted,
-        total: currentPlayerTotal,
-        username,
-      });
-    }
-  }
-
   // Track tab visibility and strikes
   useEffect(() => {
     const handleVisibilityChange = () => {
@@ -225,10 +246,10 @@ export default function ProblemPageWrapper() {
       >
         <CompetitiveWorkspace
           slug={problemSlug}
+          socket={socket}
           isSidebarOpen={isSidebarOpen}
           setIsSidebarOpen={() => setIsSidebarOpen(!isSidebarOpen)}
           updateLiveCodeLineCount={updateLiveCodeLineCount}
-          updateLiveTestCasesCount={updateLiveTestCasesCount}
         />
       </main>
 
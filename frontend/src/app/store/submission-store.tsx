@@ -12,6 +12,7 @@ export interface TestCase {
 export interface SubmissionResult {
   all_passed: boolean;
   runtime_ms: number;
+  peak_memory_kb?: number;
   test_cases_passed: number;
   total_test_cases: number;
   first_case_failed?: TestCase;
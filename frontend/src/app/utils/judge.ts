@@ -0,0 +1,76 @@
+import { Socket } from "socket.io-client";
+
+const COMPILE_API = "http://localhost:8080/compile";
+
+interface JudgeJob<T> {
+  jobId: string;
+  type: "run" | "submit";
+  status: "queued" | "running" | "done" | "failed" | "cancelled";
+  result?: T;
+}
+
+const sleep = (ms: number) => new Promise((resolve) => setTimeout(resolve, ms));
+
+const isPending = (job: JudgeJob<unknown>) => job.status === "queued" || job.status === "running";
+
+/**
+ * Queues a run or submission and resolves with its result once judged.
+ *
+ * The result is pushed over the socket ("judge_result") when one is given;
+ * the jobs endpoint is polled as a fallback. A full queue (429) is retried
+ * after the server's suggested delay.
+ */
+export async function judge<T>(
+  action: "run" | "submit",
+  body: Record<string, unknown>,
+  socket?: Socket | null,
+): Promise<T> {
+  let response: Response;
+  for (;;) {
+    response = await fetch(`${COMPILE_API}/${action}`, {
+      method: "POST",
+      credentials: "include",
+      headers: {
+        "Content-Type": "application/json",
+      },
+      body: JSON.stringify({ ...body, socketId: socket?.id }),
+    });
+    if (response.status !== 429) break;
+    const hint = await response.json();
+    await sleep(hint.retry_after_ms ?? 1000);
+  }
+
+  if (!response.ok) {
+    throw new Error(`HTTP error! Status: ${response.status}`);
+  }
+
+  let job: JudgeJob<T> = await response.json();
+  const pushed: { job?: JudgeJob<T> } = {};
+  const onResult = (message: JudgeJob<T>) => {
+    if (message.jobId === job.jobId) pushed.job = message;
+  };
+  socket?.on("judge_result", onResult);
+
+  try {
+    const pollInterval = socket ? 2000 : 500;
+    let waited = 0;
+    while (isPending(job)) {
+      await sleep(100);
+      waited += 100;
+      if (pushed.job) {
+        job = pushed.job;
+      } else if (waited >= pollInterval) {
+        waited = 0;
+        const poll = await fetch(`${COMPILE_API}/jobs/${job.jobId}`);
+        if (!poll.ok) {
+          throw new Error(`HTTP error! Status: ${poll.status}`);
+        }
+        job = await poll.json();
+      }
+    }
+  } finally {
+    socket?.off("judge_result", onResult);
+  }
+
+  return job.result as T;
+}
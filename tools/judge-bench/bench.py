@@ -0,0 +1,180 @@
+#!/usr/bin/env python3
+"""End-to-end benchmark for the judge endpoints.
+
+Drives POST /compile/run and /compile/submit against a running backend at a
+fixed concurrency, follows each queued job on /compile/jobs/{jobId} until it
+finishes, and reports throughput and latency percentiles per language and
+endpoint. Latency is measured from the POST to the job's final state, so it
+includes queueing, sharding and the executor round trip.
+
+Run it against a backend pointed at tools/lambda-local/server.py (or at a
+local executor) to load-test without AWS:
+
+    ./bench.py --slug two-sum --code python3=add.py --code cpp=add.cpp \\
+        --concurrency 32 --duration 60
+
+Every request comes from this machine's address, so raise
+judge.scheduler.user-rate and judge.scheduler.user-burst on the backend or
+most of the load is answered with 429 by the per-user rate limit.
+"""
+
+import argparse
+import collections
+import itertools
+import json
+import threading
+import time
+import urllib.error
+import urllib.request
+
+ENDPOINTS = ("run", "submit")
+
+FINISHED = ("done", "failed")
+
+
+class Stats:
+    def __init__(self):
+        self.lock = threading.Lock()
+        self.latencies = collections.defaultdict(list)
+        self.counts = collections.defaultdict(collections.Counter)
+
+    def record(self, key, outcome, latency=None):
+        with self.lock:
+            self.counts[key][outcome] += 1
+            if latency is not None:
+                self.latencies[key].append(latency)
+
+
+def request(method, url, body=None, timeout=30):
+    data = json.dumps(body).encode("utf-8") if body is not None else None
+    req = urllib.request.Request(url, data=data, method=method, headers={"Content-Type": "application/json"})
+    try:
+        with urllib.request.urlopen(req, timeout=timeout) as response:
+            return response.status, json.loads(response.read() or b"{}")
+    except urllib.error.HTTPError as e:
+        try:
+            return e.code, json.loads(e.read() or b"{}")
+        except ValueError:
+            return e.code, {}
+
+
+def run_one(args, language, code, endpoint):
+    """Queues one job and waits for it. Returns (outcome, latency in seconds)."""
+    started = time.monotonic()
+    status, body = request("POST", "%s/compile/%s" % (args.base_url, endpoint),
+                           {"language": language, "code": code, "slug": args.slug})
+    if status == 429:
+        return "throttled", None
+    if status != 202 or "jobId" not in body:
+        return "rejected", None
+
+    deadline = started + args.job_timeout
+    while body.get("status") not in FINISHED:
+        if time.monotonic() > deadline:
+            return "timeout", None
+        time.sleep(args.poll_interval)
+        status, body = request("GET", "%s/compile/jobs/%s" % (args.base_url, body["jobId"]))
+        if status != 200:
+            return "lost", None
+    latency = time.monotonic() - started
+
+    result = body.get("result") or {}
+    if body["status"] == "failed" or result.get("success") is False:
+        return "error", latency
+    return "passed" if result.get("all_passed") else "failed", latency
+
+
+def percentile(sorted_values, p):
+    if not sorted_values:
+        return 0.0
+    index = min(len(sorted_values) - 1, max(0, int(round(p / 100.0 * len(sorted_values))) - 1))
+    return sorted_values[index]
+
+
+def report(stats, elapsed):
+    header = "%-10s %-7s %7s %8s %8s %8s %8s %8s  %s" % (
+        "language", "endpoint", "jobs", "jobs/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "outcomes")
+    print(header)
+    print("-" * len(header))
+    for key in sorted(stats.counts):
+        latencies = sorted(stats.latencies[key])
+        outcomes = ", ".join("%s=%d" % item for item in sorted(stats.counts[key].items()))
+        print("%-10s %-7s %7d %8.2f %8.0f %8.0f %8.0f %8.0f  %s" % (
+            key[0], key[1], len(latencies), len(latencies) / elapsed,
+            percentile(latencies, 50) * 1000, percentile(latencies, 90) * 1000,
+            percentile(latencies, 99) * 1000, (latencies[-1] if latencies else 0) * 1000,
+            outcomes))
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.split("\n\n")[0])
+    parser.add_argument("--base-url", default="http://localhost:8080")
+    parser.add_argument("--slug", required=True, help="problem to judge against")
+    parser.add_argument("--code", action="append", required=True, metavar="LANGUAGE=FILE",
+                        help="solution to send for a language; repeat for each language")
+    parser.add_argument("--endpoint", choices=ENDPOINTS + ("both",), default="both")
+    parser.add_argument("--concurrency", type=int, default=8, help="jobs in flight at once")
+    parser.add_argument("--requests", type=int, default=0, help="stop after this many jobs")
+    parser.add_argument("--duration", type=float, default=30, help="seconds to run when --requests is not given")
+    parser.add_argument("--warmup", type=int, default=0, help="jobs per language and endpoint to run first, unmeasured")
+    parser.add_argument("--poll-interval", type=float, default=0.05, help="seconds between job polls")
+    parser.add_argument("--job-timeout", type=float, default=120, help="seconds before a job counts as timed out")
+    args = parser.parse_args()
+    args.base_url = args.base_url.rstrip("/")
+
+    solutions = []
+    for spec in args.code:
+        language, _, path = spec.partition("=")
+        if not path:
+            parser.error("--code takes LANGUAGE=FILE, got %r" % spec)
+        with open(path, encoding="utf-8") as f:
+            solutions.append((language, f.read()))
+    endpoints = ENDPOINTS if args.endpoint == "both" else (args.endpoint,)
+    mix = [(language, code, endpoint) for language, code in solutions for endpoint in endpoints]
+
+    for language, code, endpoint in mix:
+        for _ in range(args.warmup):
+            run_one(args, language, code, endpoint)
+
+    stats = Stats()
+    # Round-robin over the mix so every language and endpoint sees the same load.
+    jobs = itertools.cycle(mix)
+    jobs_lock = threading.Lock()
+    issued = [0]
+    started = time.monotonic()
+    stop_at = started + args.duration
+
+    def next_job():
+        with jobs_lock:
+            if args.requests and issued[0] >= args.requests:
+                return None
+            if not args.requests and time.monotonic() >= stop_at:
+                return None
+            issued[0] += 1
+            return next(jobs)
+
+    def client():
+        while True:
+            job = next_job()
+            if job is None:
+                return
+            language, code, endpoint = job
+            try:
+                outcome, latency = run_one(args, language, code, endpoint)
+            except (urllib.error.URLError, OSError):
+                outcome, latency = "unreachable", None
+            stats.record((language, endpoint), outcome, latency)
+
+    clients = [threading.Thread(target=client, daemon=True) for _ in range(args.concurrency)]
+    for thread in clients:
+        thread.start()
+    for thread in clients:
+        thread.join()
+
+    elapsed = time.monotonic() - started
+    print("%d jobs in %.1fs at concurrency %d against %s" % (issued[0], elapsed, args.concurrency, args.base_url))
+    report(stats, elapsed)
+
+
+if __name__ == "__main__":
+    main()
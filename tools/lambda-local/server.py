@@ -0,0 +1,283 @@
+#!/usr/bin/env python3
+"""Local stand-in for the judge function on AWS Lambda.
+
+Serves the Lambda Invoke API (POST /2015-03-31/functions/<name>/invocations)
+and judges each payload on a pool of compilers/alpine/*/worker.sh processes,
+so the backend can be exercised end to end without AWS. Point the backend at
+it with
+
+    aws.lambda.endpoint-override=http://localhost:9001
+
+Payloads are the ones LambdaCodeExecutor sends: user_code, harness_code,
+language, test_cases_hash and (unless only the hash is sent) test_cases. A
+payload that references a test-case set the stand-in has not seen is answered
+with {"missing_test_cases": true}, as the real function does.
+
+Workers are started with --command, a template in which {language}, {image}
+(the compilers/alpine directory name) and {root} (the repository) are
+substituted. The default runs
+worker.sh directly on this machine; pass a "docker run ..." command to judge
+inside the compiler images instead.
+"""
+
+import argparse
+import collections
+import hashlib
+import json
+import os
+import queue
+import re
+import shlex
+import subprocess
+import threading
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+ROOT = os.path.normpath(os.path.join(os.path.dirname(os.path.abspath(__file__)), "..", ".."))
+
+IMAGES = {
+    "c": "c-compiler",
+    "cpp": "cpp-compiler",
+    "java": "java-compiler",
+    "python": "python2-compiler",
+    "python3": "python3-compiler",
+}
+
+INVOKE_PATH = re.compile(r"^/2015-03-31/functions/([^/]+)/invocations$")
+
+CASE_CACHE_SIZE = 64
+
+
+class WorkerError(Exception):
+    pass
+
+
+class Worker:
+    """One worker.sh process, speaking the JOB/PUT framing over stdin/stdout."""
+
+    def __init__(self, language, command):
+        self.language = language
+        self.process = subprocess.Popen(command, stdin=subprocess.PIPE, stdout=subprocess.PIPE)
+        self.known_test_cases = set()
+        self.retiring = False
+
+    def run(self, code, harness, test_cases, test_cases_hash, timeout):
+        timed_out = threading.Event()
+
+        def expire():
+            timed_out.set()
+            self.process.kill()
+
+        timer = threading.Timer(timeout, expire)
+        timer.start()
+        try:
+            status, exit_code, body, usage = self._send(code, harness, test_cases, test_cases_hash,
+                                                        test_cases_hash not in self.known_test_cases)
+            if status == "missing_test_cases":
+                status, exit_code, body, usage = self._send(code, harness, test_cases, test_cases_hash, True)
+            self.known_test_cases.add(test_cases_hash)
+            return status, exit_code, body, usage
+        except WorkerError:
+            if timed_out.is_set():
+                raise WorkerError("timeout")
+            raise
+        finally:
+            timer.cancel()
+
+    def alive(self):
+        return self.process.poll() is None and not self.retiring
+
+    def kill(self):
+        self.process.kill()
+        self.process.wait()
+
+    def _send(self, code, harness, test_cases, test_cases_hash, with_body):
+        body = test_cases if with_body else b""
+        header = "JOB %s %d %d %d %s\n" % (self.language, len(code), len(harness), len(body), test_cases_hash)
+        try:
+            self.process.stdin.write(header.encode("ascii") + code + harness + body)
+            self.process.stdin.flush()
+        except (BrokenPipeError, OSError) as e:
+            raise WorkerError("worker exited") from e
+
+        usage = None
+        while True:
+            line = self.process.stdout.readline()
+            if not line:
+                raise WorkerError("worker exited")
+            parts = line.decode("ascii").split()
+            if len(parts) == 3 and parts[0] == "PROGRESS":
+                continue
+            if len(parts) == 4 and parts[0] == "USAGE":
+                usage = parts[1:]
+                continue
+            if len(parts) >= 4 and parts[0] == "RESULT":
+                self.retiring = len(parts) > 4 and parts[4] == "retire"
+                return parts[1], int(parts[2]), self.process.stdout.read(int(parts[3])), usage
+            raise WorkerError("malformed response: %r" % line)
+
+
+class WorkerPool:
+    """Warm workers for one language, handed out one invocation at a time."""
+
+    def __init__(self, language, command, size):
+        self.language = language
+        self.command = command
+        self.idle = queue.Queue()
+        for _ in range(size):
+            self.idle.put(None)
+
+    def run(self, code, harness, test_cases, test_cases_hash, timeout):
+        worker = self.idle.get()
+        try:
+            if worker is None or not worker.alive():
+                if worker is not None:
+                    worker.kill()
+                worker = Worker(self.language, self.command)
+            return worker.run(code, harness, test_cases, test_cases_hash, timeout)
+        except WorkerError:
+            worker.kill()
+            worker = None
+            raise
+        finally:
+            self.idle.put(worker)
+
+
+class Judge:
+    def __init__(self, args):
+        self.args = args
+        self.pools = {}
+        self.pools_lock = threading.Lock()
+        self.test_cases = collections.OrderedDict()
+        self.test_cases_lock = threading.Lock()
+
+    def invoke(self, function_name, payload):
+        language = payload.get("language") or self.args.language
+        if language not in IMAGES:
+            return error_result("Unsupported language: %s" % language)
+
+        cached = self._test_cases(payload, payload.get("test_cases_hash") or "")
+        if cached is None:
+            return {"missing_test_cases": True}
+        test_cases, worker_hash = cached
+
+        code = (payload.get("user_code") or "").encode("utf-8")
+        harness = (payload.get("harness_code") or "").encode("utf-8")
+        try:
+            status, exit_code, body, usage = self._pool(language).run(code, harness, test_cases, worker_hash, self.args.timeout)
+        except WorkerError as e:
+            if str(e) == "timeout":
+                return error_result("Time limit exceeded")
+            return error_result("Runtime error: the program terminated the judge process")
+        return to_result(status, exit_code, body, usage)
+
+    def _test_cases(self, payload, test_cases_hash):
+        """Returns the test cases to run and the hash the workers know them by."""
+        with self.test_cases_lock:
+            if "test_cases" in payload:
+                # Re-encoded, so the workers get a hash that matches these exact bytes.
+                test_cases = json.dumps(payload["test_cases"]).encode("utf-8")
+                cached = (test_cases, hashlib.sha256(test_cases).hexdigest())
+                if test_cases_hash:
+                    self.test_cases[test_cases_hash] = cached
+                    while len(self.test_cases) > CASE_CACHE_SIZE:
+                        self.test_cases.popitem(last=False)
+                return cached
+            if test_cases_hash in self.test_cases:
+                self.test_cases.move_to_end(test_cases_hash)
+                return self.test_cases[test_cases_hash]
+            return None
+
+    def _pool(self, language):
+        with self.pools_lock:
+            if language not in self.pools:
+                command = shlex.split(self.args.command.format(language=language, image=IMAGES[language], root=ROOT))
+                self.pools[language] = WorkerPool(language, command, self.args.pool_size)
+            return self.pools[language]
+
+
+def to_result(status, exit_code, body, usage):
+    output = body.decode("utf-8", "replace").strip()
+    if status == "ok":
+        if not output.startswith("{"):
+            return error_result("Harness produced no result")
+        result = json.loads(output)
+        if usage:
+            cpu_us, wall_us, peak_kb = usage
+            if cpu_us != "-":
+                result["cpu_time_ms"] = int(cpu_us) / 1000
+            result["wall_time_ms"] = int(wall_us) / 1000
+            if peak_kb != "-":
+                result["peak_memory_kb"] = int(peak_kb)
+        return result
+    if status == "compile_error":
+        return error_result("Compilation error:\n" + output)
+    if status == "timeout":
+        return error_result("Time limit exceeded")
+    return error_result("Runtime error (exit code %d):\n%s" % (exit_code, output))
+
+
+def error_result(error):
+    return {"success": False, "all_passed": False, "error": error}
+
+
+class InvokeHandler(BaseHTTPRequestHandler):
+    protocol_version = "HTTP/1.1"
+    judge = None
+
+    def do_POST(self):
+        match = INVOKE_PATH.match(self.path.split("?", 1)[0])
+        length = int(self.headers.get("Content-Length") or 0)
+        raw = self.rfile.read(length)
+        if not match:
+            self._respond(404, {"Type": "User", "message": "Unknown path: " + self.path}, "ResourceNotFoundException")
+            return
+        try:
+            payload = json.loads(raw or b"{}")
+        except ValueError:
+            self._respond(400, {"Type": "User", "message": "Could not parse request body into json"}, "InvalidRequestContentException")
+            return
+        self._respond(200, self.judge.invoke(match.group(1), payload))
+
+    def _respond(self, status, body, error_type=None):
+        data = json.dumps(body).encode("utf-8")
+        self.send_response(status)
+        self.send_header("Content-Type", "application/json")
+        self.send_header("Content-Length", str(len(data)))
+        self.send_header("X-Amz-Executed-Version", "$LATEST")
+        if error_type:
+            self.send_header("x-amzn-ErrorType", error_type)
+        self.end_headers()
+        self.wfile.write(data)
+
+    def log_message(self, format, *args):
+        if not self.judge.args.quiet:
+            super().log_message(format, *args)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.split("\n\n")[0])
+    parser.add_argument("--host", default="127.0.0.1")
+    parser.add_argument("--port", type=int, default=9001)
+    parser.add_argument("--pool-size", type=int, default=os.cpu_count() or 2,
+                        help="workers per language (default: number of CPUs)")
+    parser.add_argument("--timeout", type=float, default=30,
+                        help="seconds before a worker running one invocation is killed")
+    parser.add_argument("--language", default="python3",
+                        help="language for payloads that do not name one")
+    parser.add_argument("--command", default="bash {root}/compilers/alpine/{image}/worker.sh",
+                        help="worker command template; {language}, {image} and {root} are substituted")
+    parser.add_argument("--quiet", action="store_true", help="do not log each request")
+    args = parser.parse_args()
+
+    InvokeHandler.judge = Judge(args)
+    server = ThreadingHTTPServer((args.host, args.port), InvokeHandler)
+    server.daemon_threads = True
+    print("Lambda stand-in listening on http://%s:%d" % (args.host, args.port), flush=True)
+    try:
+        server.serve_forever()
+    except KeyboardInterrupt:
+        pass
+
+
+if __name__ == "__main__":
+    main()